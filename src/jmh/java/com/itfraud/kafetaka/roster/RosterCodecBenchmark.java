@@ -0,0 +1,199 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares RosterCodec, with and without String deduplication, against Java
+ * serialization and a Jackson JSON encoding of the same names and elements 
+ * (Roster itself is neither Serializable nor a bean), both in time and in 
+ * encoded bytes.
+ * 
+ * The encoded sizes show up as the "bytes" secondary result of the encode 
+ * benchmarks.
+ * 
+ * @author Norville Rogers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RosterCodecBenchmark {
+    
+    @Param({"10", "1000"})
+    private int rosterCount;
+    
+    @Param({"10", "1000"})
+    private int rosterSize;
+    
+    private List<Roster> rosters;
+    private String[] names;
+    private String[][] elements;
+    private RosterCodec codec;
+    private RosterCodec deduplicatingCodec;
+    private byte[] encoded;
+    private byte[] deduplicated;
+    private byte[] serialized;
+    private ObjectMapper objectMapper;
+    private JsonRoster[] jsonRosters;
+    private byte[] json;
+    
+    /**
+     * The size of what the last benchmark invocation encoded.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        
+        public long bytes;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+        
+    }
+    
+    /**
+     * A Roster as the JSON encoding sees it: {"name": ..., "elements": [...]}.
+     */
+    public static class JsonRoster {
+        
+        public String name;
+        public String[] elements;
+        
+    }
+    
+    @Setup
+    public void setUp() throws IOException {
+        rosters = Arrays.asList(BenchmarkRosters.create(rosterCount, rosterSize));
+        names = new String[rosterCount];
+        elements = new String[rosterCount][];
+        for (int i = 0; i < rosterCount; i++) {
+            names[i] = rosters.get(i).getName();
+            elements[i] = rosters.get(i).stream().toArray(String[]::new);
+        }
+        codec = new RosterCodec();
+        deduplicatingCodec = new RosterCodec().useStringDeduplication(true);
+        encoded = codec.encode(rosters).array();
+        deduplicated = deduplicatingCodec.encode(rosters).array();
+        serialized = serialize();
+        objectMapper = new ObjectMapper();
+        jsonRosters = new JsonRoster[rosterCount];
+        for (int i = 0; i < rosterCount; i++) {
+            jsonRosters[i] = new JsonRoster();
+            jsonRosters[i].name = names[i];
+            jsonRosters[i].elements = elements[i];
+        }
+        json = objectMapper.writeValueAsBytes(jsonRosters);
+    }
+    
+    @Benchmark
+    public ByteBuffer encode(EncodedSize size) {
+        ByteBuffer buffer = codec.encode(rosters);
+        size.bytes = buffer.remaining();
+        return buffer;
+    }
+    
+    @Benchmark
+    public ByteBuffer encodeDeduplicated(EncodedSize size) {
+        ByteBuffer buffer = deduplicatingCodec.encode(rosters);
+        size.bytes = buffer.remaining();
+        return buffer;
+    }
+    
+    @Benchmark
+    public byte[] serialize(EncodedSize size) throws IOException {
+        byte[] bytes = serialize();
+        size.bytes = bytes.length;
+        return bytes;
+    }
+    
+    @Benchmark
+    public byte[] encodeJson(EncodedSize size) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(jsonRosters);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+    
+    @Benchmark
+    public List<Roster> decode() throws IOException {
+        return codec.decode(ByteBuffer.wrap(encoded));
+    }
+    
+    @Benchmark
+    public List<Roster> decodeDeduplicated() throws IOException {
+        return codec.decode(ByteBuffer.wrap(deduplicated));
+    }
+    
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return new Object[] {in.readObject(), in.readObject()};
+        }
+    }
+    
+    @Benchmark
+    public JsonRoster[] decodeJson() throws IOException {
+        return objectMapper.readValue(json, JsonRoster[].class);
+    }
+    
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(names);
+            out.writeObject(elements);
+        }
+        return bytes.toByteArray();
+    }
+    
+}
@@ -0,0 +1,103 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what registering and rebalancing Rosters costs as the number of
+ * provided Rosters, their size and the managed Roster maximum size change.
+ * 
+ * Run it with "gradle jmh" to get the allocation rate too (see build.gradle).
+ * 
+ * @author Norville Rogers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RosterManagerBenchmark {
+    
+    @Param({"10", "1000"})
+    private int rosterCount;
+    
+    @Param({"10", "1000"})
+    private int rosterSize;
+    
+    @Param({"8", "1000"})
+    private int managedRosterSize;
+    
+    private Roster[] providedRosters;
+    private RosterManager rosterManager;
+    
+    @Setup
+    public void setUp() {
+        providedRosters = BenchmarkRosters.create(rosterCount, rosterSize);
+        rosterManager = new RosterManager(managedRosterSize);
+        for (Roster providedRoster : providedRosters)
+            rosterManager.manage(providedRoster);
+    }
+    
+    @Benchmark
+    public RosterManager manage() {
+        RosterManager manager = new RosterManager(managedRosterSize);
+        for (Roster providedRoster : providedRosters)
+            manager.manage(providedRoster);
+        return manager;
+    }
+    
+    @Benchmark
+    public RosterManager manageAll() {
+        return new RosterManager(managedRosterSize).manageAll(Arrays.asList(providedRosters));
+    }
+    
+    @Benchmark
+    public List<Roster> getManagedRosters() {
+        return rosterManager.getManagedRosters();
+    }
+    
+    @Benchmark
+    public RosterLayoutPlan getLayoutPlan() {
+        return rosterManager.getLayoutPlan();
+    }
+    
+}
@@ -0,0 +1,105 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures getManagedRosters for layouts that stop at each of the 
+ * RosterManager phases.
+ * 
+ * The phases are private, so instead of calling them one by one we feed the
+ * manager with provided Rosters shaped so that the rebalance goes exactly as
+ * far as the phase we want to look at:
+ *  - SHUFFLE: every provided Roster is full, nothing has to be moved.
+ *  - ALLOCATE: half the provided Rosters overflow and the other half have
+ *    room for all the leftovers.
+ *  - CREATE: every provided Roster overflows, so the leftovers end up in new
+ *    "Automatic Roster" Rosters.
+ * 
+ * @author Norville Rogers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RosterManagerPhasesBenchmark {
+    
+    public enum Phase { SHUFFLE, ALLOCATE, CREATE }
+    
+    @Param({"SHUFFLE", "ALLOCATE", "CREATE"})
+    private Phase phase;
+    
+    @Param({"1000"})
+    private int rosterCount;
+    
+    @Param({"100", "10000"})
+    private int managedRosterSize;
+    
+    private RosterManager rosterManager;
+    
+    @Setup
+    public void setUp() {
+        rosterManager = new RosterManager(managedRosterSize);
+        int overflowingSize = managedRosterSize + managedRosterSize / 2;
+        int halfSize = managedRosterSize / 2;
+        for (int i = 0; i < rosterCount; i++) {
+            int rosterSize;
+            switch (phase) {
+                case ALLOCATE:
+                    rosterSize = i % 2 == 0 ? overflowingSize : halfSize;
+                    break;
+                case CREATE:
+                    rosterSize = overflowingSize;
+                    break;
+                default:
+                    rosterSize = managedRosterSize;
+            }
+            rosterManager.manage(BenchmarkRosters.create("roster " + i, rosterSize));
+        }
+    }
+    
+    @Benchmark
+    public List<Roster> getManagedRosters() {
+        return rosterManager.getManagedRosters();
+    }
+    
+}
@@ -0,0 +1,139 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the array backed Roster storage against the java.util.Stack
+ * it replaced.
+ * 
+ * The push and pop benchmarks push a given number of elements and then pop all 
+ * of them, which is what a RosterManager does to every Roster on each rebalance.
+ * The stream benchmarks walk an already filled storage, and the shuffle 
+ * benchmarks compare the collect, shuffle and push copy a RosterManager used to 
+ * do against Roster.shuffledCopy.
+ * 
+ * @author Norville Rogers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RosterStorageBenchmark {
+    
+    @Param({"10", "1000", "100000"})
+    private int numberOfElements;
+    
+    private String[] elements;
+    private Stack<String> filledStack;
+    private Roster filledRoster;
+    
+    @Setup
+    public void setUp() {
+        elements = new String[numberOfElements];
+        for (int i = 0; i < numberOfElements; i++)
+            elements[i] = "element " + i;
+        filledStack = new Stack<>();
+        filledRoster = new Roster("benchmark");
+        for (String element : elements) {
+            filledStack.push(element);
+            filledRoster.push(element);
+        }
+    }
+    
+    @Benchmark
+    public void stackPushAndPop(Blackhole blackhole) {
+        Stack<String> stack = new Stack<>();
+        for (String element : elements)
+            stack.push(element);
+        while (!stack.isEmpty())
+            blackhole.consume(stack.pop());
+    }
+    
+    @Benchmark
+    public void rosterPushAndPop(Blackhole blackhole) {
+        Roster roster = new Roster("benchmark");
+        for (String element : elements)
+            roster.push(element);
+        while (!roster.isEmpty())
+            blackhole.consume(roster.pop());
+    }
+    
+    @Benchmark
+    public void rosterWithReservedCapacityPushAndPop(Blackhole blackhole) {
+        Roster roster = new Roster("benchmark").ensureCapacity(numberOfElements);
+        for (String element : elements)
+            roster.push(element);
+        while (!roster.isEmpty())
+            blackhole.consume(roster.pop());
+    }
+    
+    @Benchmark
+    public long stackStream() {
+        return filledStack.stream().filter(element -> !element.isEmpty()).count();
+    }
+    
+    @Benchmark
+    public long rosterStream() {
+        return filledRoster.stream().filter(element -> !element.isEmpty()).count();
+    }
+    
+    @Benchmark
+    public Roster collectShuffleAndPush() {
+        Roster managedRoster = new Roster("benchmark");
+        List<String> providedElements = 
+                filledRoster.stream().collect(Collectors.toList());
+        Collections.shuffle(providedElements);
+        providedElements.stream().forEach(element -> managedRoster.push(element));
+        return managedRoster;
+    }
+    
+    @Benchmark
+    public Roster shuffledCopy() {
+        return filledRoster.shuffledCopy(RandomSource.threadLocal());
+    }
+    
+}
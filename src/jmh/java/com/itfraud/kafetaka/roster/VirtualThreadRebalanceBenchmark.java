@@ -0,0 +1,152 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what the RosterManager virtual thread support is worth.
+ * 
+ * The shuffle benchmark rebalances the very same provided Rosters with the 
+ * shuffle on the calling thread, on the common ForkJoinPool, and on virtual 
+ * threads (useVirtualThreadShuffle). The tenant benchmarks rebalance thousands
+ * of RosterManagers, one per tenant, at once, through getManagedRostersAsync:
+ * on a virtual thread per rebalance, and on a fixed pool of platform threads.
+ * 
+ * @author Norville Rogers
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadRebalanceBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class Shuffles {
+        
+        @Param({"sequential", "forkJoin", "virtualThreads"})
+        private String shuffle;
+        
+        @Param({"16", "256"})
+        private int rosterCount;
+        
+        @Param({"20000"})
+        private int rosterSize;
+        
+        private RosterManager rosterManager;
+        
+        @Setup
+        public void setUp() {
+            rosterManager = new RosterManager(rosterSize / 2);
+            for (Roster providedRoster : BenchmarkRosters.create(rosterCount, rosterSize))
+                rosterManager.manage(providedRoster);
+            if ("forkJoin".equals(shuffle))
+                rosterManager.useParallelShuffle(ForkJoinPool.commonPool());
+            else if ("virtualThreads".equals(shuffle))
+                rosterManager.useVirtualThreadShuffle();
+        }
+        
+    }
+    
+    @State(Scope.Benchmark)
+    public static class Tenants {
+        
+        @Param({"10000", "50000"})
+        private int managerCount;
+        
+        @Param({"200"})
+        private int platformThreads;
+        
+        private RosterManager[] rosterManagers;
+        private ExecutorService platformPool;
+        
+        @Setup
+        public void setUp() {
+            rosterManagers = new RosterManager[managerCount];
+            for (int i = 0; i < managerCount; i++) {
+                rosterManagers[i] = new RosterManager(8);
+                for (Roster providedRoster : BenchmarkRosters.create(4, 10))
+                    rosterManagers[i].manage(providedRoster);
+            }
+            platformPool = Executors.newFixedThreadPool(platformThreads);
+        }
+        
+        @TearDown
+        public void tearDown() {
+            platformPool.shutdownNow();
+        }
+        
+    }
+    
+    @Benchmark
+    public List<Roster> shuffle(Shuffles shuffles) {
+        return shuffles.rosterManager.getManagedRosters();
+    }
+    
+    @Benchmark
+    public int tenantsOnPlatformThreads(Tenants tenants) {
+        return rebalanceAll(tenants, rosterManager -> 
+                rosterManager.getManagedRostersAsync(tenants.platformPool));
+    }
+    
+    @Benchmark
+    public int tenantsOnVirtualThreads(Tenants tenants) {
+        return rebalanceAll(tenants, RosterManager::getManagedRostersAsync);
+    }
+    
+    private static int rebalanceAll(Tenants tenants, 
+            Function<RosterManager, CompletableFuture<List<Roster>>> rebalance) {
+        List<CompletableFuture<List<Roster>>> rebalances = new ArrayList<>(tenants.managerCount);
+        for (RosterManager rosterManager : tenants.rosterManagers)
+            rebalances.add(rebalance.apply(rosterManager));
+        int managedRosters = 0;
+        for (CompletableFuture<List<Roster>> eachRebalance : rebalances)
+            managedRosters += eachRebalance.join().size();
+        return managedRosters;
+    }
+    
+}
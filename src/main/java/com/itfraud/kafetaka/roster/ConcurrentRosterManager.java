@@ -0,0 +1,92 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+/**
+ * A RosterManager that can be shared by as many threads as you like.
+ * 
+ * It works just like a RosterManager, with a few differences:
+ *  - Adding, removing and looking for Rosters never takes a lock, so threads 
+ *    registering Rosters do not wait for each other.
+ *  - Every call to getManagedRosters works on its own copy of the pool of 
+ *    provided Rosters, and builds its managed Rosters from scratch, without 
+ *    sharing any state with other calls. The resulting list is published to the
+ *    calling thread only.
+ *  - The random source is split for every rebalance, so a RandomSource that is
+ *    not thread safe, such as RandomSource.splittable(), can be used too.
+ *  - It does not rebalance incrementally: that would mean handing out the same
+ *    modifiable Rosters to several threads. Use getManagedRostersSnapshot instead,
+ *    whose read only Rosters are safe to share.
+ * 
+ * Keep in mind that Rosters themselves are not thread safe: do not modify a
+ * provided Roster while it is being managed.
+ * 
+ * @author Norville Rogers
+ */
+public final class ConcurrentRosterManager extends RosterManager {
+    
+    /**
+     * Creates a new ConcurrentRosterManager instance.
+     * 
+     * @param rosterMaxNumberOfElements This will be the maximum number of
+     * elements this manager is going to allow for any roster managed by it; must be
+     * greater than zero.
+     * @throws IllegalArgumentException If the provided rosterMaxNumberOfElements
+     * is not greater than zero.
+     */
+    public ConcurrentRosterManager(int rosterMaxNumberOfElements) {
+        super(rosterMaxNumberOfElements, new ConcurrentRosterRegistry());
+    }
+
+    /**
+     * A ConcurrentRosterManager does not rebalance incrementally.
+     * 
+     * @param incremental it must be false.
+     * @return A reference to this RosterManager
+     * @throws UnsupportedOperationException If incremental is true.
+     */
+    @Override
+    public RosterManager useIncrementalRebalancing(boolean incremental) {
+        if (incremental)
+            throw new UnsupportedOperationException("A ConcurrentRosterManager does not rebalance incrementally. Use getManagedRostersSnapshot to share managed rosters between threads");
+        
+        return this;
+    }
+
+    /*
+    Splits the random source under its own lock, since splitting changes the
+    state of the source. The rebalance then draws from the split only.
+    */
+    @Override
+    RandomSource rebalanceRandomSource() {
+        RandomSource randomSource = super.rebalanceRandomSource();
+        synchronized (randomSource) {
+            return randomSource.split();
+        }
+    }
+    
+}
@@ -0,0 +1,143 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+A RosterRegistry that never takes a lock.
+
+Rosters are indexed by name in a ConcurrentHashMap, which is where duplicates
+are rejected, and kept in order in a ConcurrentSkipListMap keyed by a sequence
+number handed out on every addition.
+
+An addition puts the Roster in the index first and in the ordered map next, so
+a removal may run in between and miss it in the ordered map. That is why an 
+addition checks, once the Roster is in the ordered map, whether it is still in 
+the index, and takes it out again if it is not.
+
+Adding several Rosters at once puts all of them in the index before any of them
+goes into the ordered map. Should one of them clash with a Roster already there,
+the ones put so far are taken out of the index again, and they never show up 
+in the ordered map.
+*/
+final class ConcurrentRosterRegistry implements RosterRegistry {
+    
+    private final ConcurrentMap<String, Entry> index = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Long, Roster> ordered = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong modifications = new AtomicLong();
+
+    @Override
+    public boolean add(Roster roster) {
+        Entry entry = new Entry(this.sequence.incrementAndGet(), roster);
+        if (this.index.putIfAbsent(roster.getName(), entry) != null)
+            return false;
+        
+        this.ordered.put(entry.sequence, roster);
+        if (this.index.get(roster.getName()) != entry)
+            this.ordered.remove(entry.sequence, roster);
+        this.modifications.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean addAll(List<Roster> rosters) {
+        long firstSequence = this.sequence.getAndAdd(rosters.size()) + 1;
+        Entry[] entries = new Entry[rosters.size()];
+        for (int i = 0; i < entries.length; i++) {
+            Roster roster = rosters.get(i);
+            entries[i] = new Entry(firstSequence + i, roster);
+            if (this.index.putIfAbsent(roster.getName(), entries[i]) != null) {
+                for (int j = 0; j < i; j++)
+                    this.index.remove(rosters.get(j).getName(), entries[j]);
+                if (i > 0)
+                    this.modifications.incrementAndGet();
+                return false;
+            }
+        }
+        
+        for (Entry entry : entries) {
+            this.ordered.put(entry.sequence, entry.roster);
+            if (this.index.get(entry.roster.getName()) != entry)
+                this.ordered.remove(entry.sequence, entry.roster);
+        }
+        this.modifications.addAndGet(entries.length);
+        return true;
+    }
+
+    @Override
+    public boolean remove(String rosterName) {
+        Entry entry = this.index.remove(rosterName);
+        if (entry == null)
+            return false;
+        
+        this.ordered.remove(entry.sequence, entry.roster);
+        this.modifications.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean contains(String rosterName) {
+        return this.index.containsKey(rosterName);
+    }
+
+    @Override
+    public List<Roster> rosters() {
+        return new ArrayList<>(this.ordered.values());
+    }
+
+    @Override
+    public void forEachRoster(Consumer<Roster> action) {
+        this.ordered.values().forEach(action);
+    }
+
+    @Override
+    public long modifications() {
+        return this.modifications.get();
+    }
+    
+    private static final class Entry {
+        
+        private final long sequence;
+        private final Roster roster;
+
+        private Entry(long sequence, Roster roster) {
+            this.sequence = sequence;
+            this.roster = roster;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,133 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An ElementDictionary gives every Roster element a dense int id: the first
+ * element it sees gets 0, the next new one gets 1, and so on. An element always
+ * keeps its id, so a single dictionary can be shared by every Roster, and run 
+ * after run.
+ * 
+ * Together with IntRoster, it lets a RosterManager shuffle and redistribute 
+ * plain int arrays instead of String references, and decode the results back 
+ * into Rosters only when they are needed.
+ * 
+ * An ElementDictionary is thread safe.
+ * 
+ * @author Norville Rogers
+ */
+public final class ElementDictionary {
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] elements = new String[DEFAULT_CAPACITY];
+    
+    /**
+     * Returns the id of an element, giving it a new one if this dictionary has
+     * never seen it before.
+     * 
+     * @param element the element to encode; must be neither null nor empty.
+     * @return An int with the element id, zero or greater.
+     * @throws IllegalArgumentException If the given element is null or empty.
+     */
+    public synchronized int encode(String element) {
+        if (element == null || element.isEmpty())
+            throw new IllegalArgumentException("You are trying to encode a null or empty element. The element must be neither null nor empty");
+        
+        Integer id = this.ids.get(element);
+        if (id != null)
+            return id;
+        
+        int newId = this.ids.size();
+        if (newId == this.elements.length)
+            this.elements = Arrays.copyOf(this.elements, newId + (newId >> 1));
+        this.elements[newId] = element;
+        this.ids.put(element, newId);
+        return newId;
+    }
+    
+    /**
+     * Returns the element with the given id.
+     * 
+     * @param id an id handed out by this dictionary.
+     * @return The element.
+     * @throws IllegalArgumentException If this dictionary never handed out the given id.
+     */
+    public synchronized String decode(int id) {
+        checkId(id);
+        return this.elements[id];
+    }
+    
+    /**
+     * The number of different elements this dictionary knows about.
+     * 
+     * @return An int with the number of ids handed out so far.
+     */
+    public synchronized int size() {
+        return this.ids.size();
+    }
+
+    @Override
+    public String toString() {
+        return "{elements:" + size() + "}";
+    }
+    
+    /*
+    Encodes count elements from the given array, starting at offset, taking 
+    the lock only once.
+    */
+    synchronized int[] encodeAll(String[] source, int offset, int count) {
+        int[] encoded = new int[count];
+        for (int i = 0; i < count; i++)
+            encoded[i] = encode(source[offset + i]);
+        return encoded;
+    }
+    
+    /*
+    Decodes count ids from the given array, starting at offset, taking the 
+    lock only once.
+    */
+    synchronized String[] decodeAll(int[] source, int offset, int count) {
+        String[] decoded = new String[count];
+        for (int i = 0; i < count; i++) {
+            checkId(source[offset + i]);
+            decoded[i] = this.elements[source[offset + i]];
+        }
+        return decoded;
+    }
+    
+    private void checkId(int id) {
+        if (id < 0 || id >= this.ids.size())
+            throw new IllegalArgumentException("You are trying to decode the id " + id + ", which this dictionary never handed out. It must be between 0 and " + (this.ids.size() - 1));
+    }
+    
+}
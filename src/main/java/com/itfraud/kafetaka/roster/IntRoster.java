@@ -0,0 +1,222 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * An IntRoster is a Roster whose elements have been encoded into int ids by an
+ * ElementDictionary.
+ * 
+ * It is a stack of plain ints, so it takes a fraction of the heap a Roster 
+ * takes, and a RosterManager can rebalance IntRosters without chasing a 
+ * single reference. It decodes back into a Roster whenever needed.
+ * 
+ * Just like Rosters, two IntRosters with the same name are the same IntRoster.
+ * An IntRoster is not thread safe.
+ * 
+ * @author Norville Rogers
+ */
+public final class IntRoster {
+    
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final int[] NO_ELEMENTS = {};
+    
+    private final String name;
+    private int[] elements = NO_ELEMENTS;
+    private int size;
+
+    /**
+     * Creates a new IntRoster instance.
+     * 
+     * @param rosterName the roster name; must be neither null nor empty.
+     * @throws IllegalArgumentException If the provided rosterName is null or empty
+     */
+    public IntRoster(String rosterName) {
+        if (rosterName == null || rosterName.isEmpty())
+            throw new IllegalArgumentException("You are trying to create an IntRoster with a null or empty name. The roster name must be neither null nor empty");
+        
+        this.name = rosterName;
+    }
+    
+    /**
+     * Encodes a Roster, with the same name and the same elements in the same
+     * order. The Roster is left untouched.
+     * 
+     * @param roster the Roster to encode; must be not null.
+     * @param dictionary the dictionary that gives the elements their ids; must be not null.
+     * @return A new IntRoster.
+     * @throws IllegalArgumentException If any of the parameters is null.
+     */
+    public static IntRoster encode(Roster roster, ElementDictionary dictionary) {
+        if (roster == null || dictionary == null)
+            throw new IllegalArgumentException("You are trying to encode a Roster with a null Roster or dictionary. Both must be not null");
+        
+        String[] elements = new String[roster.size()];
+        for (int i = 0; i < elements.length; i++)
+            elements[i] = roster.elementAt(i);
+        return wrap(roster.getName(), dictionary.encodeAll(elements, 0, elements.length));
+    }
+    
+    /**
+     * Decodes this IntRoster into a new Roster, with the same name and the same
+     * elements in the same order. This IntRoster is left untouched.
+     * 
+     * @param dictionary the dictionary that encoded the elements; must be not null.
+     * @return A new Roster.
+     * @throws IllegalArgumentException If the dictionary is null, or it never 
+     * handed out some of the ids in this IntRoster.
+     */
+    public Roster decode(ElementDictionary dictionary) {
+        if (dictionary == null)
+            throw new IllegalArgumentException("You are trying to decode an IntRoster with a null dictionary. The dictionary must be not null");
+        
+        return Roster.wrap(this.name, dictionary.decodeAll(this.elements, 0, this.size));
+    }
+    
+    /**
+     * This roster name get method.
+     * 
+     * @return This roster's name.
+     */
+    public String getName() {
+        return this.name;
+    }
+    
+    /**
+     * Adds an element id to this roster.
+     * 
+     * @param element the id of the element we are about to add; must be zero or greater.
+     * @return This roster
+     * @throws IllegalArgumentException If the given id is negative.
+     */
+    public IntRoster push(int element) {
+        if (element < 0)
+            throw new IllegalArgumentException("You are trying to add the element id " + element + " to this IntRoster. Element ids must be zero or greater");
+        
+        if (this.size == this.elements.length)
+            this.elements = Arrays.copyOf(this.elements, 
+                    Math.max(DEFAULT_CAPACITY, Math.addExact(this.size, this.size >> 1)));
+        this.elements[this.size++] = element;
+        return this;
+    }
+    
+    /**
+     * Retrieves the last element id added to this IntRoster.
+     * 
+     * @return The last addition to this IntRoster
+     * @throws EmptyStackException If this IntRoster has no elements.
+     */
+    public int pop() {
+        if (this.size == 0)
+            throw new EmptyStackException();
+        
+        return this.elements[--this.size];
+    }
+    
+    /**
+     * Returns this IntRoster element collection size.
+     * 
+     * @return An int with this IntRoster collection size.
+     */
+    public int size() {
+        return this.size;
+    }
+    
+    /**
+     * Tests if this IntRoster has no elements.
+     * 
+     * @return true if and only if this IntRoster has no elements; false otherwise.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+    
+    /**
+     * Allows access to this IntRoster element ids stream.
+     * 
+     * @return this IntRoster element ids stream, the first one pushed first.
+     */
+    public IntStream stream() {
+        return Arrays.stream(this.elements, 0, this.size);
+    }
+    
+    /*
+    Returns the element id at the given index, zero being the first one pushed.
+    */
+    int elementAt(int index) {
+        return this.elements[index];
+    }
+    
+    /*
+    Creates an IntRoster that takes ownership of the given array, full of valid ids.
+    */
+    static IntRoster wrap(String name, int[] elements) {
+        IntRoster roster = new IntRoster(name);
+        roster.elements = elements;
+        roster.size = elements.length;
+        return roster;
+    }
+    
+    /**
+     * The hascode is calculated from this IntRoster name.
+     * 
+     * @return An int representing the hashcode.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 83 * hash + Objects.hashCode(this.name);
+        return hash;
+    }
+
+    /**
+     * Two IntRosters are equal when they have the same name.
+     * 
+     * @param obj another IntRoster.
+     * @return true if we are comparing IntRosters with the same name, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final IntRoster other = (IntRoster) obj;
+        return Objects.equals(this.name, other.name);
+    }
+
+    @Override
+    public String toString() {
+        return "{name:" + name + ", elements:" + 
+                stream().mapToObj(Integer::toString).collect(Collectors.joining(", ", "[", "]")) + "}";
+    }
+    
+}
@@ -0,0 +1,76 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+
+/*
+The surplus elements taken from the managed Rosters that were over the maximum
+size, waiting to be moved to a Roster with room for them.
+
+They sit in a flat array sized up front, so taking them from a Roster and 
+moving them to another one is a single array copy each time. The array only
+grows if a Roster changed after the surplus was counted.
+*/
+final class Leftovers {
+    
+    private String[] elements;
+    private int first;
+    private int last;
+
+    Leftovers(int capacity) {
+        this.elements = new String[capacity];
+    }
+    
+    /*
+    Takes the last count elements of the given Roster.
+    */
+    void takeFrom(Roster roster, int count) {
+        if (this.last + count > this.elements.length)
+            this.elements = Arrays.copyOf(this.elements, this.last + count);
+        roster.popInto(this.elements, this.last, count);
+        this.last += count;
+    }
+    
+    /*
+    Moves as many leftovers as there are, up to count, to the given Roster.
+    */
+    void moveTo(Roster roster, int count) {
+        int moved = Math.min(count, size());
+        roster.pushFrom(this.elements, this.first, moved);
+        this.first += moved;
+    }
+    
+    int size() {
+        return this.last - this.first;
+    }
+    
+    boolean isEmpty() {
+        return this.first == this.last;
+    }
+    
+}
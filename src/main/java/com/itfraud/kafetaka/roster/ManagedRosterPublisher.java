@@ -0,0 +1,154 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+Publishes the managed Rosters of a lazy layout, building each one only once a
+subscriber has asked for it.
+
+Every subscriber gets a layout of its own, started on its first request. The
+Rosters are emitted on the given executor, by a drain loop that only one 
+thread runs at a time, so requesting more from within onNext never recurses.
+*/
+final class ManagedRosterPublisher implements Flow.Publisher<Roster> {
+    
+    private final Supplier<Iterator<Roster>> layouts;
+    private final Executor executor;
+
+    ManagedRosterPublisher(Supplier<Iterator<Roster>> layouts, Executor executor) {
+        this.layouts = layouts;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Roster> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("You are trying to subscribe a null Subscriber. The Subscriber must be not null");
+        
+        subscriber.onSubscribe(new RosterSubscription(subscriber));
+    }
+    
+    /*
+    A subscriber demand, and the layout that meets it.
+    */
+    private final class RosterSubscription implements Flow.Subscription, Runnable {
+        
+        private final Flow.Subscriber<? super Roster> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private Iterator<Roster> managedRosters;
+
+        private RosterSubscription(Flow.Subscriber<? super Roster> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                this.invalidRequest = new IllegalArgumentException("You are trying to request " + n + " Rosters. The request must be greater than zero");
+            else
+                this.requested.getAndAccumulate(n, (current, more) -> 
+                        current + more < 0 ? Long.MAX_VALUE : current + more);
+            drainLater();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+        
+        /*
+        Emits as many Rosters as requested, then checks whether more were 
+        requested in the meantime.
+        */
+        @Override
+        public void run() {
+            int drains = 1;
+            do {
+                if (this.invalidRequest != null && !this.cancelled) {
+                    terminate();
+                    this.subscriber.onError(this.invalidRequest);
+                }
+                long demand = this.requested.get();
+                long emitted = 0;
+                while (emitted != demand && !this.cancelled) {
+                    Roster managedRoster;
+                    try {
+                        if (this.managedRosters == null)
+                            this.managedRosters = ManagedRosterPublisher.this.layouts.get();
+                        if (!this.managedRosters.hasNext())
+                            break;
+                        managedRoster = this.managedRosters.next();
+                    } catch (RuntimeException e) {
+                        terminate();
+                        this.subscriber.onError(e);
+                        break;
+                    }
+                    this.subscriber.onNext(managedRoster);
+                    emitted++;
+                }
+                if (!this.cancelled && this.managedRosters != null && !this.managedRosters.hasNext()) {
+                    terminate();
+                    this.subscriber.onComplete();
+                }
+                if (emitted > 0 && demand != Long.MAX_VALUE)
+                    this.requested.addAndGet(-emitted);
+                if (this.cancelled)
+                    this.managedRosters = null;
+                drains = this.pendingDrains.addAndGet(-drains);
+            } while (drains != 0);
+        }
+        
+        private void drainLater() {
+            if (this.pendingDrains.getAndIncrement() != 0)
+                return;
+            try {
+                ManagedRosterPublisher.this.executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                terminate();
+                this.subscriber.onError(e);
+            }
+        }
+        
+        private void terminate() {
+            this.cancelled = true;
+            this.managedRosters = null;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,411 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A MappedRosterStore keeps provided Rosters in a file, and reads them back 
+ * through a memory mapping, so that a restart does not have to push every 
+ * element again.
+ * 
+ * Opening a store maps the file and checks its header, nothing else: the 
+ * operating system pages the file in as Rosters are read. The Rosters a store
+ * hands out read their elements straight from the mapping, and only get a heap
+ * copy the first time they are modified, so they can be given to 
+ * RosterManager.manage right away.
+ * 
+ * The file layout, all ints big endian, is:
+ *  - A header: magic number, version, number of Rosters, number of elements.
+ *  - A Roster table with two ints per Roster: where its name ends within the
+ *    text area, and how many elements all the Rosters up to it hold.
+ *  - An element table with an int per element: where it ends within the text area.
+ *  - The text area: every name, then every element, UTF-8 encoded.
+ * A store file cannot be bigger than 2 GB.
+ * 
+ * Once the store is closed, its Rosters fail with an IllegalStateException, 
+ * unless they have been modified already. Closing does not unmap the file, 
+ * since a Roster may be reading it on another thread at that very moment: 
+ * the file stays mapped until the store and its Rosters are garbage collected.
+ * On Windows, the file cannot be replaced or deleted until then.
+ * A MappedRosterStore may be read from several threads at once.
+ * 
+ * @author Norville Rogers
+ */
+public final class MappedRosterStore implements AutoCloseable {
+    
+    private static final int MAGIC = 0x4B524F53;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final boolean WINDOWS = System.getProperty("os.name").startsWith("Windows");
+    
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int rosterCount;
+    private final int elementTableStart;
+    private final int textStart;
+    private volatile boolean closed;
+    
+    private MappedRosterStore(Path file, MappedByteBuffer buffer, int rosterCount, int elementCount) {
+        this.file = file;
+        this.buffer = buffer;
+        this.rosterCount = rosterCount;
+        this.elementTableStart = HEADER_BYTES + rosterCount * 2 * Integer.BYTES;
+        this.textStart = this.elementTableStart + elementCount * Integer.BYTES;
+    }
+    
+    /**
+     * Writes the given Rosters, in order, into a store file, replacing the file
+     * if it already exists. The Rosters are left untouched, and must not be 
+     * modified while they are being written.
+     * 
+     * The elements are encoded straight into the file, through a small buffer,
+     * so writing a store takes next to no memory, however big it is.
+     * 
+     * The file is written next to its final place, synced, and then moved over
+     * it, and the move is synced as well, so once this method returns the store
+     * survives a crash, and the previous store is never left half written.
+     * 
+     * @param file where to write the store; must be not null.
+     * @param rosters the Rosters to store; neither the collection nor any of 
+     * its Rosters may be null.
+     * @throws IllegalArgumentException If any of the parameters is null, or 
+     * contains nulls, or the Rosters do not fit in a 2 GB file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, Collection<Roster> rosters) throws IOException {
+        if (file == null || rosters == null)
+            throw new IllegalArgumentException("You are trying to write a store with a null file, or a null collection of Rosters, or one with null Rosters. None of them may be null");
+        
+        long elementCount = 0;
+        long bytes = HEADER_BYTES + rosters.size() * 2L * Integer.BYTES;
+        for (Roster roster : rosters) {
+            if (roster == null)
+                throw new IllegalArgumentException("You are trying to write a store with a null file, or a null collection of Rosters, or one with null Rosters. None of them may be null");
+            bytes += utf8Length(roster.getName());
+            for (int i = 0; i < roster.size(); i++)
+                bytes += Integer.BYTES + utf8Length(roster.elementAt(i));
+            elementCount += roster.size();
+        }
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("You are trying to write a store of " + bytes + " bytes. A store cannot be bigger than " + Integer.MAX_VALUE + " bytes");
+        
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, 
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChannelOutput out = new ChannelOutput(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(rosters.size());
+            out.putInt((int) elementCount);
+            int textEnd = 0;
+            int elementEnd = 0;
+            for (Roster roster : rosters) {
+                textEnd += utf8Length(roster.getName());
+                elementEnd += roster.size();
+                out.putInt(textEnd);
+                out.putInt(elementEnd);
+            }
+            for (Roster roster : rosters)
+                for (int i = 0; i < roster.size(); i++) {
+                    textEnd += utf8Length(roster.elementAt(i));
+                    out.putInt(textEnd);
+                }
+            for (Roster roster : rosters)
+                out.putText(roster.getName());
+            for (Roster roster : rosters)
+                for (int i = 0; i < roster.size(); i++)
+                    out.putText(roster.elementAt(i));
+            out.drain();
+            channel.force(true);
+        }
+        try {
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+    
+    /*
+    Syncs a directory, so that the files created, moved or deleted within it 
+    survive a crash. Windows does not let a directory be opened, but there NTFS
+    journals those changes anyway.
+    */
+    static void syncDirectory(Path directory) throws IOException {
+        if (WINDOWS)
+            return;
+        
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+    
+    /**
+     * Opens a store file written by write, mapping it into memory.
+     * 
+     * Nothing is read but the header, so opening takes the same time whatever
+     * the size of the store.
+     * 
+     * @param file the store file; must be not null.
+     * @return The opened store, which must be closed when done.
+     * @throws IllegalArgumentException If the file is null.
+     * @throws IOException If the file cannot be read, or it is not a store file.
+     */
+    public static MappedRosterStore open(Path file) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("You are trying to open a store with a null file. The file must be not null");
+        
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is not a roster store: it is " + channel.size() + " bytes long");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            DirectBuffers.free(buffer);
+            throw new IOException(file + " is not a roster store, or it was written by an unknown version");
+        }
+        int rosterCount = buffer.getInt(2 * Integer.BYTES);
+        int elementCount = buffer.getInt(3 * Integer.BYTES);
+        long textStart = HEADER_BYTES + (rosterCount * 2L + elementCount) * Integer.BYTES;
+        if (rosterCount < 0 || elementCount < 0 || textStart > buffer.capacity()) {
+            DirectBuffers.free(buffer);
+            throw new IOException(file + " is not a roster store: its tables do not fit in the file");
+        }
+        return new MappedRosterStore(file, buffer, rosterCount, elementCount);
+    }
+    
+    /**
+     * The number of Rosters in this store.
+     * 
+     * @return An int with the number of Rosters.
+     */
+    public int rosterCount() {
+        return this.rosterCount;
+    }
+    
+    /**
+     * The name of a Roster.
+     * 
+     * @param roster the Roster number, zero being the first one written.
+     * @return The Roster name.
+     * @throws IndexOutOfBoundsException If there is no such Roster.
+     * @throws IllegalStateException If this store is closed.
+     */
+    public String name(int roster) {
+        checkRoster(roster);
+        int start = roster == 0 ? 0 : rosterTable(roster - 1, 0);
+        return text(start, rosterTable(roster, 0));
+    }
+    
+    /**
+     * The size of a Roster.
+     * 
+     * @param roster the Roster number, zero being the first one written.
+     * @return An int with the Roster size.
+     * @throws IndexOutOfBoundsException If there is no such Roster.
+     * @throws IllegalStateException If this store is closed.
+     */
+    public int size(int roster) {
+        checkRoster(roster);
+        return rosterTable(roster, 1) - firstElement(roster);
+    }
+    
+    /**
+     * Returns a Roster with the name and elements of a Roster in this store.
+     * 
+     * The Roster reads its elements from the mapped file as they are needed, 
+     * and gets a heap copy of them the first time it is modified.
+     * 
+     * @param roster the Roster number, zero being the first one written.
+     * @return A new Roster.
+     * @throws IndexOutOfBoundsException If there is no such Roster.
+     * @throws IllegalStateException If this store is closed.
+     */
+    public Roster roster(int roster) {
+        int firstElement = firstElement(roster);
+        return Roster.view(name(roster), index -> element(firstElement + index), size(roster));
+    }
+    
+    /**
+     * Returns every Roster in this store, in the order they were written, 
+     * ready to be managed by a RosterManager.
+     * 
+     * @return A List with a new Roster per Roster in this store.
+     * @throws IllegalStateException If this store is closed.
+     */
+    public List<Roster> rosters() {
+        List<Roster> rosters = new ArrayList<>(this.rosterCount);
+        for (int roster = 0; roster < this.rosterCount; roster++)
+            rosters.add(roster(roster));
+        return rosters;
+    }
+    
+    /**
+     * Closes the store, so that neither it nor its Rosters read the file 
+     * anymore. The file is unmapped once the store and its Rosters are garbage
+     * collected. Closing it again does nothing.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    @Override
+    public String toString() {
+        return "{file:" + this.file + ", rosters:" + this.rosterCount + "}";
+    }
+    
+    private void checkRoster(int roster) {
+        checkOpen();
+        if (roster < 0 || roster >= this.rosterCount)
+            throw new IndexOutOfBoundsException("Roster " + roster + " is out of a store with " + this.rosterCount + " Rosters");
+    }
+    
+    private void checkOpen() {
+        if (this.closed)
+            throw new IllegalStateException("You are trying to read the store " + this.file + " after closing it. It can no longer be read");
+    }
+    
+    /*
+    Reads a Roster table column: 0 for the end of its name, 1 for the end of
+    its elements.
+    */
+    private int rosterTable(int roster, int column) {
+        return this.buffer.getInt(HEADER_BYTES + (roster * 2 + column) * Integer.BYTES);
+    }
+    
+    private int firstElement(int roster) {
+        checkRoster(roster);
+        return roster == 0 ? 0 : rosterTable(roster - 1, 1);
+    }
+    
+    /*
+    Decodes an element, numbered across all the Rosters in the store.
+    */
+    private String element(int element) {
+        checkOpen();
+        int start = element == 0 
+                ? rosterTable(this.rosterCount - 1, 0) 
+                : this.buffer.getInt(this.elementTableStart + (element - 1) * Integer.BYTES);
+        return text(start, this.buffer.getInt(this.elementTableStart + element * Integer.BYTES));
+    }
+    
+    /*
+    Decodes text between two offsets of the text area. Absolute reads only,
+    so that several threads can read at once.
+    */
+    private String text(int start, int end) {
+        byte[] encoded = new byte[end - start];
+        this.buffer.get(this.textStart + start, encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+    
+    /*
+    The number of bytes the given text takes UTF-8 encoded, just like 
+    ChannelOutput encodes it: a lone surrogate becomes a single '?'.
+    */
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80)
+                length++;
+            else if (c < 0x800)
+                length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length() 
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c))
+                length++;
+            else
+                length += 3;
+        }
+        return length;
+    }
+    
+    /*
+    Writes ints and UTF-8 encoded text to a channel through a buffer of its 
+    own, so that nothing else is allocated along the way.
+    */
+    private static final class ChannelOutput {
+        
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private ChannelOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+        
+        private void putInt(int value) throws IOException {
+            if (this.buffer.remaining() < Integer.BYTES)
+                drain();
+            this.buffer.putInt(value);
+        }
+        
+        private void putText(String text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            this.encoder.reset();
+            while (this.encoder.encode(chars, this.buffer, true).isOverflow())
+                drain();
+            while (this.encoder.flush(this.buffer).isOverflow())
+                drain();
+        }
+        
+        /*
+        Writes whatever the buffer holds to the channel.
+        */
+        private void drain() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining())
+                this.channel.write(this.buffer);
+            this.buffer.clear();
+        }
+        
+    }
+    
+}
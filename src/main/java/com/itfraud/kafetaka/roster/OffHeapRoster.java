@@ -0,0 +1,321 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EmptyStackException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An OffHeapRoster is a Roster whose elements live outside the Java heap.
+ * 
+ * The elements are kept UTF-8 encoded, one after the other, in a direct 
+ * ByteBuffer, with a second direct ByteBuffer holding where each of them ends.
+ * So, however many elements it holds, an OffHeapRoster is just a handful of
+ * heap objects, and the garbage collector never has to trace its elements. 
+ * Strings are only created, and briefly, when elements are pushed, popped 
+ * or streamed.
+ * 
+ * Its memory is freed deterministically: close it when done, preferably with
+ * a try-with-resources statement, and the buffers are freed right there. Any
+ * use after closing fails with an IllegalStateException.
+ * 
+ * A RosterManager works on Rosters: asRoster gives a Roster view which reads 
+ * its elements straight from the direct buffers, so it can be managed without
+ * copying the elements back onto the heap. Only the managed Rosters a 
+ * RosterManager builds out of it, and the view itself once it is modified, 
+ * hold heap copies of the elements. toRoster copies every element into a 
+ * regular Roster instead, and of copies a Roster into a new OffHeapRoster.
+ * An OffHeapRoster is not thread safe, but it may be read from several threads
+ * at once, as long as nobody modifies it.
+ * 
+ * @author Norville Rogers
+ */
+public final class OffHeapRoster implements AutoCloseable {
+    
+    private static final int DEFAULT_ELEMENT_CAPACITY = 16;
+    private static final int DEFAULT_BYTE_CAPACITY = 256;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    
+    private final String name;
+    private ByteBuffer data;
+    private ByteBuffer ends;
+    private int size;
+    private boolean closed;
+
+    /**
+     * Creates a new OffHeapRoster instance.
+     * 
+     * @param rosterName the roster name; must be neither null nor empty.
+     * @throws IllegalArgumentException If the provided rosterName is null or empty
+     */
+    public OffHeapRoster(String rosterName) {
+        if (rosterName == null || rosterName.isEmpty())
+            throw new IllegalArgumentException("You are trying to create an OffHeapRoster with a null or empty name. The roster name must be neither null nor empty");
+        
+        this.name = rosterName;
+        this.data = ByteBuffer.allocateDirect(DEFAULT_BYTE_CAPACITY);
+        this.ends = ByteBuffer.allocateDirect(DEFAULT_ELEMENT_CAPACITY * Integer.BYTES);
+    }
+    
+    /**
+     * Creates a new OffHeapRoster with the same name and the same elements, in 
+     * the same order, as the given Roster. The Roster is left untouched.
+     * 
+     * @param roster the Roster to copy off heap; must be not null.
+     * @return A new OffHeapRoster, which must be closed when done.
+     * @throws IllegalArgumentException If the provided Roster is null.
+     */
+    public static OffHeapRoster of(Roster roster) {
+        if (roster == null)
+            throw new IllegalArgumentException("You are trying to create an OffHeapRoster out of a null Roster. The Roster must be not null");
+        
+        OffHeapRoster offHeapRoster = new OffHeapRoster(roster.getName());
+        for (int i = 0; i < roster.size(); i++)
+            offHeapRoster.append(roster.elementAt(i).getBytes(StandardCharsets.UTF_8));
+        return offHeapRoster;
+    }
+    
+    /**
+     * This roster name get method.
+     * 
+     * @return This roster's name.
+     */
+    public String getName() {
+        return this.name;
+    }
+    
+    /**
+     * Adds an element to this roster.
+     * 
+     * @param element the element we are about to add to this roster; must be 
+     * neither null nor empty
+     * @return This roster
+     * @throws IllegalArgumentException If the given element is null or empty.
+     * @throws IllegalStateException If this OffHeapRoster is closed.
+     */
+    public OffHeapRoster push(String element) {
+        checkOpen();
+        if (element == null || element.isEmpty())
+            throw new IllegalArgumentException("You are trying to add a null or empty element to this OffHeapRoster. The element must be neither null nor empty");
+        
+        append(element.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+    
+    /**
+     * Retrieves the last element added to this Roster collection of elements.
+     * 
+     * @return The last addition to this Roster
+     * @throws EmptyStackException If this Roster has no elements.
+     * @throws IllegalStateException If this OffHeapRoster is closed.
+     */
+    public String pop() {
+        checkOpen();
+        if (this.size == 0)
+            throw new EmptyStackException();
+        
+        String element = elementAt(this.size - 1);
+        this.size--;
+        return element;
+    }
+    
+    /**
+     * Returns this Roster element collection size.
+     * 
+     * @return An int with this Roster collection size.
+     */
+    public int size() {
+        return this.size;
+    }
+    
+    /**
+     * Tests if this Roster has no elements.
+     * 
+     * @return true if and only if this Roster has no elements; false otherwise.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+    
+    /**
+     * The number of bytes the elements take off heap, UTF-8 encoded.
+     * 
+     * @return An int with the bytes in use.
+     */
+    public int byteSize() {
+        return endOf(this.size - 1);
+    }
+    
+    /**
+     * Allows access to this Roster collection of elements stream.
+     * 
+     * The elements are decoded as the stream reaches them, the first one pushed
+     * first. The stream must not be used after this OffHeapRoster is modified
+     * or closed.
+     * 
+     * @return this Roster element stream.
+     * @throws IllegalStateException If this OffHeapRoster is closed.
+     */
+    public Stream<String> stream() {
+        checkOpen();
+        return IntStream.range(0, this.size).mapToObj(index -> {
+            checkOpen();
+            return elementAt(index);
+        });
+    }
+    
+    /**
+     * Returns a Roster with the name and elements of this OffHeapRoster, which
+     * reads them straight from its direct buffers, as they are needed. The 
+     * Roster gets a heap copy of its elements the first time it is modified.
+     * 
+     * This OffHeapRoster must not be modified while the Roster is in use, and 
+     * the Roster fails with an IllegalStateException once this OffHeapRoster 
+     * is closed, unless it has been modified already.
+     * 
+     * @return A new Roster view, ready to be managed by a RosterManager.
+     * @throws IllegalStateException If this OffHeapRoster is closed.
+     */
+    public Roster asRoster() {
+        checkOpen();
+        return Roster.view(this.name, index -> {
+            checkOpen();
+            return elementAt(index);
+        }, this.size);
+    }
+    
+    /**
+     * Creates a new, regular, Roster with the same name and the same elements,
+     * in the same order, so that it can be given to a RosterManager. This 
+     * OffHeapRoster is left untouched.
+     * 
+     * @return A new Roster.
+     * @throws IllegalStateException If this OffHeapRoster is closed.
+     */
+    public Roster toRoster() {
+        checkOpen();
+        String[] elements = new String[this.size];
+        for (int i = 0; i < elements.length; i++)
+            elements[i] = elementAt(i);
+        return Roster.wrap(this.name, elements);
+    }
+    
+    /**
+     * Tests if this OffHeapRoster has been closed.
+     * 
+     * @return true if its memory has been freed; false otherwise.
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+    
+    /**
+     * Frees the memory this OffHeapRoster takes off heap, right away. Closing 
+     * it again does nothing.
+     */
+    @Override
+    public void close() {
+        if (this.closed)
+            return;
+        
+        this.closed = true;
+        this.size = 0;
+        ByteBuffer freedData = this.data;
+        ByteBuffer freedEnds = this.ends;
+        this.data = null;
+        this.ends = null;
+        DirectBuffers.free(freedData);
+        DirectBuffers.free(freedEnds);
+    }
+
+    @Override
+    public String toString() {
+        return "{name:" + name + ", elements:" + this.size + ", bytes:" 
+                + (this.closed ? "closed" : byteSize()) + "}";
+    }
+    
+    /*
+    Appends an element, already UTF-8 encoded, growing the buffers if needed.
+    */
+    private void append(byte[] encoded) {
+        int start = byteSize();
+        int end = start + encoded.length;
+        if (end < 0 || end > MAX_CAPACITY)
+            throw new OutOfMemoryError("An OffHeapRoster cannot hold " + (start + (long) encoded.length) + " bytes");
+        if (end > this.data.capacity())
+            this.data = grow(this.data, end, start);
+        if ((this.size + 1) * Integer.BYTES > this.ends.capacity())
+            this.ends = grow(this.ends, (this.size + 1) * Integer.BYTES, this.size * Integer.BYTES);
+        
+        this.data.position(start);
+        this.data.put(encoded);
+        this.ends.putInt(this.size * Integer.BYTES, end);
+        this.size++;
+    }
+    
+    /*
+    Decodes the element at the given index, zero being the first one pushed.
+    Absolute reads only, so that several threads can read at once.
+    */
+    private String elementAt(int index) {
+        int start = endOf(index - 1);
+        byte[] encoded = new byte[endOf(index) - start];
+        this.data.get(start, encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+    
+    private int endOf(int index) {
+        return index < 0 ? 0 : this.ends.getInt(index * Integer.BYTES);
+    }
+    
+    private void checkOpen() {
+        if (this.closed)
+            throw new IllegalStateException("You are trying to use the OffHeapRoster " + this.name + " after closing it. Its memory has already been freed");
+    }
+    
+    /*
+    Moves the first used bytes of the given buffer into a new one, half as big
+    again or big enough for minCapacity, and frees the old one.
+    */
+    private static ByteBuffer grow(ByteBuffer buffer, int minCapacity, int used) {
+        int oldCapacity = buffer.capacity();
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity < minCapacity || newCapacity > MAX_CAPACITY)
+            newCapacity = minCapacity;
+        
+        ByteBuffer grown = ByteBuffer.allocateDirect(newCapacity);
+        ByteBuffer usedBytes = buffer.duplicate();
+        usedBytes.clear().limit(used);
+        grown.put(usedBytes).clear();
+        DirectBuffers.free(buffer);
+        return grown;
+    }
+    
+}
@@ -0,0 +1,124 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The source of randomness a RosterManager uses to shuffle the provided Rosters.
+ * 
+ * There are ready made sources for the usual random generators, but you may
+ * write your own too. A RandomSource used for a parallel shuffle gets split, so
+ * that each parallel task has a source of its own: split must return a source
+ * that can be used from another thread while this one is still in use. The
+ * default split returns this very source, which is only right for thread safe
+ * sources.
+ * 
+ * @author Norville Rogers
+ */
+@FunctionalInterface
+public interface RandomSource {
+    
+    /**
+     * Returns a random int between zero (inclusive) and the given bound (exclusive).
+     * 
+     * @param bound the upper bound; must be greater than zero.
+     * @return A random int within [0, bound)
+     */
+    int nextInt(int bound);
+    
+    /**
+     * Returns a source that can be used from another thread while this one
+     * is still being used.
+     * 
+     * @return A new source split from this one, or this very source if it is thread safe.
+     */
+    default RandomSource split() {
+        return this;
+    }
+    
+    /**
+     * A source backed by ThreadLocalRandom: each thread draws from its own 
+     * generator, so there is no contention at all. It cannot be seeded.
+     * 
+     * @return A thread safe RandomSource.
+     */
+    static RandomSource threadLocal() {
+        return bound -> ThreadLocalRandom.current().nextInt(bound);
+    }
+    
+    /**
+     * A source backed by a SplittableRandom with a random seed. Splitting it
+     * yields independent SplittableRandom generators.
+     * 
+     * @return A RandomSource that is not thread safe, but splits cheaply.
+     */
+    static RandomSource splittable() {
+        return new SplittableRandomSource(new SplittableRandom());
+    }
+    
+    /**
+     * A source backed by a SplittableRandom with the given seed. Two sources
+     * created with the same seed yield the same shuffles, whether shuffling 
+     * sequentially, on a ForkJoinPool or on virtual threads, which makes it the
+     * one to use to replay a rebalance.
+     * 
+     * @param seed the initial seed.
+     * @return A RandomSource that is not thread safe, but splits cheaply.
+     */
+    static RandomSource splittable(long seed) {
+        return new SplittableRandomSource(new SplittableRandom(seed));
+    }
+    
+    /**
+     * A source backed by a java.util.Random with the given seed.
+     * 
+     * @param seed the initial seed.
+     * @return A thread safe RandomSource.
+     */
+    static RandomSource seeded(long seed) {
+        return of(new Random(seed));
+    }
+    
+    /**
+     * A source backed by the given java.util.Random. Random is thread safe, 
+     * but all the threads using it compete for its seed.
+     * 
+     * @param random the generator to draw from; must be not null.
+     * @return A thread safe RandomSource.
+     * @throws IllegalArgumentException If the provided random is null
+     */
+    static RandomSource of(Random random) {
+        if (random == null)
+            throw new IllegalArgumentException("You are trying to create a RandomSource from a null Random. The Random must be not null");
+        
+        return random::nextInt;
+    }
+    
+}
@@ -26,8 +26,11 @@ For more information, please refer to <http://unlicense.org>
  */
 package com.itfraud.kafetaka.roster;
 
+import java.util.Arrays;
+import java.util.EmptyStackException;
 import java.util.Objects;
-import java.util.Stack;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -38,12 +41,28 @@ import java.util.stream.Stream;
  * A roster is univocally identified by its name, so two rosters with the same 
  * name are the same roster.
  * 
+ * The elements are kept in a plain growable array, so no operation takes a lock.
+ * Some Rosters, such as the managed Roster views a RosterManager hands out, 
+ * start out sharing their elements with other Rosters instead, and only get 
+ * an array of their own the first time they are modified.
+ * A Roster is not thread safe: if you share it between threads, you must take
+ * care of the synchronization yourself.
+ * 
  * @author Norville Rogers
  */
 public final class Roster {
     
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final String[] NO_ELEMENTS = {};
+    
     private final String name;
-    private final Stack<String> elements = new Stack<>();
+    private String[] elements = NO_ELEMENTS;
+    private int size;
+    private int modifications;
+    private boolean readOnly;
+    private ElementSource sharedSource;
+    private boolean elementsShared;
 
     /**
      * Creates a new Roster instance.
@@ -76,14 +95,18 @@ public final class Roster {
      * neither null nor empty
      * @return This roster
      * @throws IllegalArgumentException If the given element is null or empty.
+     * @throws UnsupportedOperationException If this Roster is read only.
      */
     public Roster push(String element) {
+        checkWritable();
         if (element == null)
             throw new IllegalArgumentException("You are trying to add a null element to this Roster. The element must be not null");
         if (element.isEmpty())
             throw new IllegalArgumentException("You are trying to add an empty element to this Roster. The element must be not empty");
         
-        this.elements.push(element);
+        ensureCapacity(this.size + 1);
+        this.elements[this.size++] = element;
+        this.modifications++;
         return this;
     }
 
@@ -91,9 +114,147 @@ public final class Roster {
      * Retrieves the last element added to this Roster collection of elements.
      * 
      * @return The last addition to this Roster
+     * @throws EmptyStackException If this Roster has no elements.
+     * @throws UnsupportedOperationException If this Roster is read only.
      */
     public String pop() {
-        return this.elements.pop();
+        checkWritable();
+        if (this.size == 0)
+            throw new EmptyStackException();
+        
+        prepareForWrite(this.size);
+        String element = this.elements[--this.size];
+        this.elements[this.size] = null;
+        this.modifications++;
+        return element;
+    }
+    
+    /**
+     * Creates a new Roster with the same name and the same elements as this 
+     * one, in random order. This Roster is left untouched.
+     * 
+     * The elements are shuffled as they are copied, in a single pass, straight
+     * into the storage of the new Roster.
+     * 
+     * @param random the source of randomness for the shuffle; must be not null.
+     * @return A new, modifiable Roster with this Roster's elements shuffled.
+     * @throws IllegalArgumentException If the provided random is null.
+     */
+    public Roster shuffledCopy(RandomSource random) {
+        if (random == null)
+            throw new IllegalArgumentException("You are trying to shuffle a Roster with a null RandomSource. The RandomSource must be not null");
+        
+        // "Inside-out" Fisher-Yates: element i goes to a random slot j <= i,
+        // and whatever was at j moves up to i.
+        String[] shuffled = new String[this.size];
+        for (int i = 0; i < this.size; i++) {
+            int j = random.nextInt(i + 1);
+            shuffled[i] = shuffled[j];
+            shuffled[j] = elementAt(i);
+        }
+        Roster copy = new Roster(this.name);
+        copy.elements = shuffled;
+        copy.size = this.size;
+        return copy;
+    }
+    
+    /**
+     * Shuffles the elements of this Roster in place.
+     * 
+     * @param random the source of randomness for the shuffle; must be not null.
+     * @return This roster
+     * @throws IllegalArgumentException If the provided random is null.
+     * @throws UnsupportedOperationException If this Roster is read only.
+     */
+    public Roster shuffle(RandomSource random) {
+        checkWritable();
+        if (random == null)
+            throw new IllegalArgumentException("You are trying to shuffle a Roster with a null RandomSource. The RandomSource must be not null");
+        
+        prepareForWrite(this.size);
+        shuffleTop(random, this.size);
+        this.modifications++;
+        return this;
+    }
+    
+    /**
+     * Tests if this Roster can be modified.
+     * 
+     * The Rosters within a RosterManager snapshot are read only; any other Roster
+     * can be modified.
+     * 
+     * @return true if elements can be pushed to and popped from this Roster; 
+     * false otherwise.
+     */
+    public boolean isReadOnly() {
+        return this.readOnly;
+    }
+    
+    /**
+     * Adds all the given elements to this roster, in order, so that the last 
+     * one in the array will be the first one to be retrieved.
+     * 
+     * @param elements the elements we are about to add to this roster; neither
+     * the array nor any of its elements may be null, and no element may be empty.
+     * @return This roster
+     * @throws IllegalArgumentException If the array is null, or any of its 
+     * elements is null or empty. In that case, no element is added.
+     * @throws UnsupportedOperationException If this Roster is read only.
+     */
+    public Roster pushAll(String... elements) {
+        checkWritable();
+        if (elements == null)
+            throw new IllegalArgumentException("You are trying to add a null array of elements to this Roster. The array must be not null");
+        for (String element : elements)
+            if (element == null || element.isEmpty())
+                throw new IllegalArgumentException("You are trying to add a null or empty element to this Roster. Every element must be neither null nor empty");
+        
+        pushFrom(elements, 0, elements.length);
+        return this;
+    }
+    
+    /**
+     * Retrieves the last elements added to this Roster collection of elements.
+     * 
+     * The elements come in the order they were added, so pushAll(popN(count))
+     * leaves the Roster as it was.
+     * 
+     * @param count how many elements to retrieve; must be neither negative 
+     * nor greater than this Roster size.
+     * @return An array with the last count elements added to this Roster
+     * @throws IllegalArgumentException If count is negative or greater than this Roster size.
+     * @throws UnsupportedOperationException If this Roster is read only.
+     */
+    public String[] popN(int count) {
+        checkWritable();
+        if (count < 0 || count > this.size)
+            throw new IllegalArgumentException("You are trying to pop " + count + " elements from a Roster with " + this.size + " elements");
+        
+        String[] popped = new String[count];
+        popInto(popped, 0, count);
+        return popped;
+    }
+    
+    /**
+     * Makes sure this Roster can hold at least the given number of elements
+     * without growing its storage again.
+     * 
+     * Use it before pushing a known, large amount of elements.
+     * 
+     * @param minCapacity the number of elements this Roster should be able to hold.
+     * @return This roster
+     * @throws IllegalArgumentException If the given minCapacity is negative.
+     * @throws UnsupportedOperationException If this Roster is read only.
+     */
+    public Roster ensureCapacity(int minCapacity) {
+        checkWritable();
+        if (minCapacity < 0)
+            throw new IllegalArgumentException("You are trying to set a Roster capacity of: " + minCapacity + ". It must be zero or greater");
+        
+        prepareForWrite(minCapacity);
+        if (minCapacity > this.elements.length)
+            grow(minCapacity);
+        return this;
     }
     
     /**
@@ -102,7 +263,7 @@ public final class Roster {
      * @return An int with this Roster collection size.
      */
     public int size() {
-        return this.elements.size();
+        return this.size;
     }
     
     /**
@@ -112,7 +273,7 @@ public final class Roster {
      * its size is zero; false otherwise.
      */
     public boolean isEmpty() {
-        return this.elements.isEmpty();
+        return this.size == 0;
     }
     
     /**
@@ -121,7 +282,158 @@ public final class Roster {
      * @return this Roster element stream.
      */
     public Stream<String> stream() {
-        return this.elements.stream();
+        if (this.sharedSource != null)
+            return IntStream.range(0, this.size).mapToObj(this.sharedSource::elementAt);
+        return Arrays.stream(this.elements, 0, this.size);
+    }
+    
+    /*
+    Counts every push and pop done on this Roster, so that a RosterManager
+    can tell whether it has changed since the last time it looked at it.
+    */
+    int modifications() {
+        return this.modifications;
+    }
+    
+    /*
+    Creates a new Roster with the same name and elements, where the last count
+    elements are a random choice among all of them, in random order. The rest
+    of the elements keep their relative order only as far as the swaps allow.
+    */
+    Roster surplusShuffledCopy(RandomSource random, int count) {
+        Roster copy = copy();
+        copy.shuffleTop(random, count);
+        return copy;
+    }
+    
+    /*
+    A Fisher-Yates shuffle that stops after choosing the last count elements.
+    Each of those is drawn from all the elements not chosen yet, so choosing 
+    them costs count draws, whatever the size of this Roster.
+    */
+    private void shuffleTop(RandomSource random, int count) {
+        int stop = this.size - count;
+        for (int i = this.size - 1; i >= stop && i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String element = this.elements[i];
+            this.elements[i] = this.elements[j];
+            this.elements[j] = element;
+        }
+    }
+    
+    /*
+    Returns the element at the given index, zero being the first one pushed.
+    */
+    String elementAt(int index) {
+        if (this.sharedSource != null)
+            return this.sharedSource.elementAt(index);
+        return this.elements[index];
+    }
+    
+    /*
+    Creates a Roster whose elements are read from the given source, until the
+    Roster is modified for the first time.
+    */
+    static Roster view(String name, ElementSource source, int size) {
+        Roster roster = new Roster(name);
+        roster.sharedSource = source;
+        roster.size = size;
+        return roster;
+    }
+    
+    /*
+    Hands out this Roster elements array so that it can be read by others, 
+    such as views. From now on, this Roster copies the array before modifying it,
+    so that whatever was handed out never changes.
+    */
+    String[] shareElements() {
+        if (this.sharedSource != null)
+            prepareForWrite(this.size);
+        this.elementsShared = true;
+        return this.elements;
+    }
+    
+    /*
+    Hands out a source of this Roster elements that never sees the changes 
+    made to this one. A view of this Roster hands out its own source rather 
+    than copying it.
+    */
+    ElementSource shareSource() {
+        if (this.sharedSource != null)
+            return this.sharedSource;
+        
+        String[] sharedElements = shareElements();
+        return index -> sharedElements[index];
+    }
+    
+    /*
+    Creates a Roster with the same name and elements, in the same order, which
+    shares them with this one, and never sees the changes made to this one.
+    */
+    Roster sharedView() {
+        return view(this.name, shareSource(), this.size);
+    }
+    
+    /*
+    Creates a Roster that takes ownership of the given array, full of valid elements.
+    */
+    static Roster wrap(String name, String[] elements) {
+        Roster roster = new Roster(name);
+        roster.elements = elements;
+        roster.size = elements.length;
+        return roster;
+    }
+    
+    /*
+    Pushes count elements from the given array, starting at offset, with no 
+    checks at all: the caller guarantees they are valid elements.
+    */
+    void pushFrom(String[] source, int offset, int count) {
+        ensureCapacity(this.size + count);
+        System.arraycopy(source, offset, this.elements, this.size, count);
+        this.size += count;
+        this.modifications++;
+    }
+    
+    /*
+    Pops the last count elements into the given array, starting at offset,
+    in the order they were pushed. A view only reads the elements it pops, 
+    and keeps reading the rest from its source.
+    */
+    void popInto(String[] target, int offset, int count) {
+        int newSize = this.size - count;
+        if (this.sharedSource != null) {
+            for (int i = 0; i < count; i++)
+                target[offset + i] = this.sharedSource.elementAt(newSize + i);
+            this.size = newSize;
+            this.modifications++;
+            return;
+        }
+        
+        prepareForWrite(this.size);
+        System.arraycopy(this.elements, newSize, target, offset, count);
+        Arrays.fill(this.elements, newSize, this.size, null);
+        this.size = newSize;
+        this.modifications++;
+    }
+    
+    /*
+    From now on, neither push nor pop will be allowed on this Roster.
+    */
+    void makeReadOnly() {
+        this.readOnly = true;
+    }
+    
+    /*
+    Creates a new Roster with the same name and the same elements, in the same order.
+    */
+    Roster copy() {
+        Roster copy = new Roster(this.name);
+        copy.elements = this.sharedSource != null 
+                ? readSharedSource(this.size) 
+                : Arrays.copyOf(this.elements, this.size);
+        copy.size = this.size;
+        return copy;
     }
     
     /**
@@ -159,7 +471,51 @@ public final class Roster {
 
     @Override
     public String toString() {
-        return "{name:" + name + ", elements:[" + elements + "]}";
+        return "{name:" + name + ", elements:[" + 
+                stream().collect(Collectors.joining(", ", "[", "]")) + "]}";
+    }
+    
+    private void checkWritable() {
+        if (this.readOnly)
+            throw new UnsupportedOperationException("You are trying to modify the read only Roster " + this.name + ". Rosters within a snapshot cannot be modified");
+    }
+    
+    /*
+    Makes sure this Roster owns its elements array, with room for at least
+    minCapacity elements, before it gets modified.
+    */
+    private void prepareForWrite(int minCapacity) {
+        if (this.sharedSource != null) {
+            this.elements = readSharedSource(Math.max(minCapacity, this.size));
+            this.sharedSource = null;
+        } else if (this.elementsShared) {
+            this.elements = Arrays.copyOf(this.elements, Math.max(minCapacity, this.elements.length));
+            this.elementsShared = false;
+        }
+    }
+    
+    private String[] readSharedSource(int capacity) {
+        String[] copy = new String[capacity];
+        for (int i = 0; i < this.size; i++)
+            copy[i] = this.sharedSource.elementAt(i);
+        return copy;
+    }
+    
+    /*
+    Grows the storage by half its current length, or up to minCapacity
+    if that is not enough.
+    */
+    private void grow(int minCapacity) {
+        if (minCapacity > MAX_CAPACITY)
+            throw new OutOfMemoryError("A Roster cannot hold " + minCapacity + " elements");
+        
+        int oldCapacity = this.elements.length;
+        int newCapacity = oldCapacity + (oldCapacity >> 1);
+        if (newCapacity < DEFAULT_CAPACITY)
+            newCapacity = DEFAULT_CAPACITY;
+        if (newCapacity < minCapacity || newCapacity > MAX_CAPACITY)
+            newCapacity = minCapacity;
+        this.elements = Arrays.copyOf(this.elements, newCapacity);
     }
     
 }
@@ -0,0 +1,366 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A RosterCodec turns a list of Rosters, such as the managed Rosters of a 
+ * RosterManager, into a compact binary form and back, to move them between 
+ * services.
+ * 
+ * The binary form is a magic byte, a format version and a flags byte, then the
+ * number of Rosters and, for each Roster, its name, its size and its elements,
+ * the first one pushed first. Every number is an unsigned varint, and every 
+ * String a varint length followed by its UTF-8 bytes. 
+ * 
+ * Optionally, the codec deduplicates Strings: each String is written in full
+ * the first time only, and afterwards as a reference to that first time. It
+ * pays off when the same elements show up in many Rosters. Decoding works out
+ * whether deduplication was used by itself.
+ * 
+ * A RosterCodec is thread safe.
+ * 
+ * @author Norville Rogers
+ */
+public final class RosterCodec {
+    
+    private static final int MAGIC = 'R';
+    private static final int VERSION = 1;
+    private static final int DEDUPLICATED = 1;
+    private static final int MAX_STRING_BYTES = 1 << 30;
+    private static final int MAX_PREALLOCATION = 4096;
+    
+    private volatile boolean deduplicateStrings;
+    
+    /**
+     * Sets whether Strings are deduplicated when encoding. They are not, 
+     * unless told otherwise.
+     * 
+     * @param deduplicate true to write each String in full only once.
+     * @return This RosterCodec
+     */
+    public RosterCodec useStringDeduplication(boolean deduplicate) {
+        this.deduplicateStrings = deduplicate;
+        return this;
+    }
+    
+    /**
+     * Encodes the given Rosters into a stream. The stream is flushed, but not closed.
+     * 
+     * @param rosters the Rosters to encode; neither the list nor any of its 
+     * Rosters may be null.
+     * @param out where to write them; must be not null.
+     * @throws IllegalArgumentException If any of the parameters is null, or 
+     * the list holds null Rosters.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void encode(List<Roster> rosters, OutputStream out) throws IOException {
+        if (out == null)
+            throw new IllegalArgumentException("You are trying to encode Rosters into a null OutputStream. The stream must be not null");
+        checkRosters(rosters);
+        
+        BufferedOutputStream buffered = new BufferedOutputStream(out);
+        encode(rosters, new Output() {
+            @Override
+            void writeByte(int b) throws IOException {
+                buffered.write(b);
+            }
+            @Override
+            void writeBytes(byte[] bytes) throws IOException {
+                buffered.write(bytes);
+            }
+        });
+        buffered.flush();
+    }
+    
+    /**
+     * Encodes the given Rosters into a buffer, starting at its position, and
+     * leaves the position right after them.
+     * 
+     * @param rosters the Rosters to encode; neither the list nor any of its 
+     * Rosters may be null.
+     * @param target where to write them; must be not null.
+     * @throws IllegalArgumentException If any of the parameters is null, or 
+     * the list holds null Rosters.
+     * @throws BufferOverflowException If the Rosters do not fit in the buffer.
+     */
+    public void encode(List<Roster> rosters, ByteBuffer target) {
+        if (target == null)
+            throw new IllegalArgumentException("You are trying to encode Rosters into a null ByteBuffer. The buffer must be not null");
+        checkRosters(rosters);
+        
+        try {
+            encode(rosters, new Output() {
+                @Override
+                void writeByte(int b) {
+                    target.put((byte) b);
+                }
+                @Override
+                void writeBytes(byte[] bytes) {
+                    target.put(bytes);
+                }
+            });
+        } catch (IOException cannotHappen) {
+            throw new UncheckedIOException(cannotHappen);
+        }
+    }
+    
+    /**
+     * Encodes the given Rosters into a new buffer, just as big as needed.
+     * 
+     * @param rosters the Rosters to encode; neither the list nor any of its 
+     * Rosters may be null.
+     * @return A new buffer, ready to be read.
+     * @throws IllegalArgumentException If the list is null, or holds null Rosters.
+     */
+    public ByteBuffer encode(List<Roster> rosters) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            encode(rosters, bytes);
+        } catch (IOException cannotHappen) {
+            throw new UncheckedIOException(cannotHappen);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+    
+    /**
+     * Decodes Rosters from a stream, reading exactly the bytes they were 
+     * encoded into, so that whatever follows them is left in the stream. 
+     * The stream is read a byte at a time, so give it a buffered one.
+     * 
+     * @param in where to read them from; must be not null.
+     * @return A List with new, modifiable, Rosters.
+     * @throws IllegalArgumentException If the stream is null.
+     * @throws IOException If the stream cannot be read, or it does not hold
+     * Rosters encoded by a RosterCodec.
+     */
+    public List<Roster> decode(InputStream in) throws IOException {
+        if (in == null)
+            throw new IllegalArgumentException("You are trying to decode Rosters from a null InputStream. The stream must be not null");
+        
+        return decode(new Input() {
+            @Override
+            int readByte() throws IOException {
+                int b = in.read();
+                if (b < 0)
+                    throw new EOFException("The stream ended in the middle of the encoded Rosters");
+                return b;
+            }
+            @Override
+            void readBytes(byte[] bytes) throws IOException {
+                int read = 0;
+                while (read < bytes.length) {
+                    int count = in.read(bytes, read, bytes.length - read);
+                    if (count < 0)
+                        throw new EOFException("The stream ended in the middle of the encoded Rosters");
+                    read += count;
+                }
+            }
+        });
+    }
+    
+    /**
+     * Decodes Rosters from a buffer, starting at its position, and leaves the 
+     * position right after them.
+     * 
+     * @param source where to read them from; must be not null.
+     * @return A List with new, modifiable, Rosters.
+     * @throws IllegalArgumentException If the buffer is null.
+     * @throws IOException If the buffer does not hold Rosters encoded by a RosterCodec.
+     */
+    public List<Roster> decode(ByteBuffer source) throws IOException {
+        if (source == null)
+            throw new IllegalArgumentException("You are trying to decode Rosters from a null ByteBuffer. The buffer must be not null");
+        
+        try {
+            return decode(new Input() {
+                @Override
+                int readByte() {
+                    return source.get() & 0xFF;
+                }
+                @Override
+                void readBytes(byte[] bytes) {
+                    source.get(bytes);
+                }
+            });
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("The buffer ended in the middle of the encoded Rosters");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{deduplicateStrings:" + this.deduplicateStrings + "}";
+    }
+    
+    private void encode(List<Roster> rosters, Output out) throws IOException {
+        boolean deduplicate = this.deduplicateStrings;
+        Map<String, Integer> written = deduplicate ? new HashMap<>() : null;
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(deduplicate ? DEDUPLICATED : 0);
+        out.writeVarint(rosters.size());
+        for (Roster roster : rosters) {
+            out.writeString(roster.getName(), written);
+            out.writeVarint(roster.size());
+            for (int i = 0; i < roster.size(); i++)
+                out.writeString(roster.elementAt(i), written);
+        }
+    }
+    
+    private static List<Roster> decode(Input in) throws IOException {
+        if (in.readByte() != MAGIC)
+            throw new IOException("These are not Rosters encoded by a RosterCodec");
+        int version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("These Rosters were encoded by an unknown RosterCodec version: " + version);
+        List<String> read = (in.readByte() & DEDUPLICATED) != 0 ? new ArrayList<>() : null;
+        
+        int rosterCount = in.readVarint();
+        List<Roster> rosters = new ArrayList<>(Math.min(rosterCount, MAX_PREALLOCATION));
+        for (int roster = 0; roster < rosterCount; roster++) {
+            String name = in.readString(read);
+            int size = in.readVarint();
+            String[] elements = new String[Math.min(size, MAX_PREALLOCATION)];
+            for (int i = 0; i < size; i++) {
+                if (i == elements.length)
+                    elements = Arrays.copyOf(elements, Math.min(size, i + (i >> 1)));
+                elements[i] = in.readString(read);
+            }
+            rosters.add(Roster.wrap(name, elements));
+        }
+        return rosters;
+    }
+    
+    private static void checkRosters(List<Roster> rosters) {
+        if (rosters == null)
+            throw new IllegalArgumentException("You are trying to encode a null list of Rosters, or one with null Rosters. Neither the list nor its Rosters may be null");
+        for (Roster roster : rosters)
+            if (roster == null)
+                throw new IllegalArgumentException("You are trying to encode a null list of Rosters, or one with null Rosters. Neither the list nor its Rosters may be null");
+    }
+    
+    /*
+    Where encoded bytes go.
+    */
+    private abstract static class Output {
+        
+        abstract void writeByte(int b) throws IOException;
+        
+        abstract void writeBytes(byte[] bytes) throws IOException;
+        
+        void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+        
+        /*
+        Writes a String in full, or, when deduplicating, as a reference to the
+        first time it was written: 0 means a String in full follows, and n a
+        reference to the nth String written in full.
+        */
+        void writeString(String string, Map<String, Integer> written) throws IOException {
+            if (written != null) {
+                Integer reference = written.get(string);
+                if (reference != null) {
+                    writeVarint(reference);
+                    return;
+                }
+                written.put(string, written.size() + 1);
+                writeVarint(0);
+            }
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+        
+    }
+    
+    /*
+    Where encoded bytes come from.
+    */
+    private abstract static class Input {
+        
+        abstract int readByte() throws IOException;
+        
+        abstract void readBytes(byte[] bytes) throws IOException;
+        
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0)
+                        throw new IOException("The encoded Rosters hold a number out of range");
+                    return value;
+                }
+            }
+            throw new IOException("The encoded Rosters hold a malformed number");
+        }
+        
+        String readString(List<String> read) throws IOException {
+            if (read != null) {
+                int reference = readVarint();
+                if (reference > read.size())
+                    throw new IOException("The encoded Rosters refer to a String which was never written");
+                if (reference > 0)
+                    return read.get(reference - 1);
+            }
+            int length = readVarint();
+            if (length == 0 || length > MAX_STRING_BYTES)
+                throw new IOException("The encoded Rosters hold a String " + length + " bytes long, but names and elements can be neither empty nor that long");
+            byte[] bytes = new byte[length];
+            readBytes(bytes);
+            String string = new String(bytes, StandardCharsets.UTF_8);
+            if (read != null)
+                read.add(string);
+            return string;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,727 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A RosterLayoutPlan describes where every element of the provided Rosters ends
+ * up after a rebalance, without moving a single element.
+ * 
+ * It is worked out from the provided Roster sizes alone, and it is made of
+ * plain int arrays:
+ *  - A permutation for each provided Roster: the shuffled order of its elements,
+ *    as indexes into the Roster (zero being the first element pushed).
+ *  - A list of moves. Each move takes a run of consecutive elements from a 
+ *    provided Roster, in shuffled order, and puts them at a given offset within
+ *    a managed Roster. The managed Rosters are numbered like the provided Rosters
+ *    they come from, followed by the new "Automatic Roster" ones.
+ * 
+ * A plan follows exactly the same rules as RosterManager.getManagedRosters, so
+ * materializing it into Rosters gives the same managed Rosters a RosterManager 
+ * would have built with the same shuffle. Since it never touches the elements, 
+ * a plan is cheap to compute for huge Rosters, and two plans can be compared
+ * with equals.
+ * 
+ * A plan can also be turned into managed Roster views, which read their elements
+ * straight from the provided Rosters through the plan, instead of copying them.
+ * 
+ * @author Norville Rogers
+ */
+public final class RosterLayoutPlan {
+    
+    private final String[] sourceNames;
+    private final int[] sourceSizes;
+    private final int[] permutationOffsets;
+    private final int[] permutation;
+    private final int[] targetSizes;
+    private final int[] moveSourceRosters;
+    private final int[] moveSourceOffsets;
+    private final int[] moveTargetRosters;
+    private final int[] moveTargetOffsets;
+    private final int[] moveLengths;
+
+    private RosterLayoutPlan(String[] sourceNames, int[] sourceSizes, int[] permutationOffsets, 
+            int[] permutation, int[] targetSizes, Moves moves) {
+        this.sourceNames = sourceNames;
+        this.sourceSizes = sourceSizes;
+        this.permutationOffsets = permutationOffsets;
+        this.permutation = permutation;
+        this.targetSizes = targetSizes;
+        this.moveSourceRosters = Arrays.copyOf(moves.sourceRosters, moves.count);
+        this.moveSourceOffsets = Arrays.copyOf(moves.sourceOffsets, moves.count);
+        this.moveTargetRosters = Arrays.copyOf(moves.targetRosters, moves.count);
+        this.moveTargetOffsets = Arrays.copyOf(moves.targetOffsets, moves.count);
+        this.moveLengths = Arrays.copyOf(moves.lengths, moves.count);
+    }
+    
+    /*
+    Plans a rebalance of Rosters with the given names and sizes, following the 
+    RosterManager rules: the provided Rosters are shuffled, cut down to the 
+    maximum size, and their surplus fills the room left within the non empty 
+    Rosters first, and new Rosters next.
+    */
+    static RosterLayoutPlan plan(String[] sourceNames, int[] sourceSizes, int managedRosterSize, 
+            ShuffleMode shuffleMode, RandomSource random) {
+        int sourceCount = sourceSizes.length;
+        int[] permutationOffsets = new int[sourceCount + 1];
+        for (int i = 0; i < sourceCount; i++)
+            permutationOffsets[i + 1] = Math.addExact(permutationOffsets[i], sourceSizes[i]);
+        
+        int[] permutation = new int[permutationOffsets[sourceCount]];
+        ShuffleRuns runs = ShuffleRuns.of(sourceSizes, random);
+        for (int run = 0; run < runs.count(); run++)
+            for (int i = runs.start(run); i < runs.end(run); i++)
+                shuffleMode.permute(permutation, permutationOffsets[i], sourceSizes[i], 
+                        runs.random(run), managedRosterSize);
+        
+        Moves moves = new Moves(sourceCount);
+        int[] targetSizes = layOut(sourceSizes, managedRosterSize, moves);
+        return new RosterLayoutPlan(sourceNames, sourceSizes, permutationOffsets, permutation, 
+                targetSizes, moves);
+    }
+    
+    /*
+    Lays out the given provided Rosters just like materializing their plan 
+    would, but one managed Roster at a time, as the iterator is walked. A 
+    provided Roster is only shuffled when the first managed Roster that needs 
+    its elements is built, and it is dropped right after the last one. The 
+    shuffles are still made in order, run by run, so they draw the same random
+    ints as a RosterManager does.
+    */
+    static Iterator<Roster> lazyMaterialize(List<Roster> providedRosters, int managedRosterSize, 
+            ShuffleMode shuffleMode, RandomSource random) {
+        return new LazyTargets(providedRosters, managedRosterSize, shuffleMode, random);
+    }
+    
+    /*
+    Works out the moves, and returns the managed Roster sizes, for provided 
+    Rosters with the given sizes. The moves of each managed Roster are added 
+    in target offset order.
+    */
+    private static int[] layOut(int[] sourceSizes, int managedRosterSize, Moves moves) {
+        int sourceCount = sourceSizes.length;
+        int[] targetSizes = new int[sourceCount];
+        for (int i = 0; i < sourceCount; i++) {
+            targetSizes[i] = Math.min(sourceSizes[i], managedRosterSize);
+            if (targetSizes[i] > 0)
+                moves.add(i, 0, i, 0, targetSizes[i]);
+        }
+        
+        Surplus surplus = new Surplus(sourceSizes, managedRosterSize);
+        for (int target = 0; target < sourceCount && surplus.isLeft(); target++)
+            if (targetSizes[target] > 0)
+                targetSizes[target] = surplus.moveTo(moves, target, targetSizes[target], managedRosterSize);
+        
+        List<Integer> extraTargetSizes = new ArrayList<>();
+        while (surplus.isLeft())
+            extraTargetSizes.add(surplus.moveTo(moves, sourceCount + extraTargetSizes.size(), 
+                    0, managedRosterSize));
+        
+        int[] allTargetSizes = Arrays.copyOf(targetSizes, sourceCount + extraTargetSizes.size());
+        for (int i = 0; i < extraTargetSizes.size(); i++)
+            allTargetSizes[sourceCount + i] = extraTargetSizes.get(i);
+        return allTargetSizes;
+    }
+    
+    /*
+    Sorts moves by target with a stable counting sort, so that the moves of 
+    each target sit together, ordered by target offset. Fills in where the 
+    moves of each target start, plus where the last one ends.
+    */
+    private static int[] movesByTarget(int[] moveTargetRosters, int moveCount, int[] targetMoveStarts) {
+        int targetCount = targetMoveStarts.length - 1;
+        for (int move = 0; move < moveCount; move++)
+            targetMoveStarts[moveTargetRosters[move] + 1]++;
+        for (int target = 0; target < targetCount; target++)
+            targetMoveStarts[target + 1] += targetMoveStarts[target];
+        int[] movesByTarget = new int[moveCount];
+        int[] next = Arrays.copyOf(targetMoveStarts, targetCount);
+        for (int move = 0; move < moveCount; move++)
+            movesByTarget[next[moveTargetRosters[move]]++] = move;
+        return movesByTarget;
+    }
+    
+    /**
+     * The number of provided Rosters this plan was made for.
+     * 
+     * @return An int with the number of provided Rosters.
+     */
+    public int sourceCount() {
+        return this.sourceSizes.length;
+    }
+    
+    /**
+     * The size a provided Roster had when this plan was made.
+     * 
+     * @param source the provided Roster number.
+     * @return An int with the provided Roster size.
+     */
+    public int sourceSize(int source) {
+        return this.sourceSizes[source];
+    }
+    
+    /**
+     * Tells which element of a provided Roster lands at a given position of its
+     * shuffled order.
+     * 
+     * @param source the provided Roster number.
+     * @param shuffledPosition the position within the shuffled order.
+     * @return The index of the element within the provided Roster, zero being 
+     * the first element pushed.
+     */
+    public int sourceElementIndex(int source, int shuffledPosition) {
+        if (shuffledPosition < 0 || shuffledPosition >= this.sourceSizes[source])
+            throw new IndexOutOfBoundsException("Position " + shuffledPosition + " is out of a Roster with " + this.sourceSizes[source] + " elements");
+        
+        return this.permutation[this.permutationOffsets[source] + shuffledPosition];
+    }
+    
+    /**
+     * The number of managed Rosters this plan lays out: one per provided Roster,
+     * plus the new ones.
+     * 
+     * @return An int with the number of managed Rosters.
+     */
+    public int targetCount() {
+        return this.targetSizes.length;
+    }
+    
+    /**
+     * The name a managed Roster will have.
+     * 
+     * @param target the managed Roster number.
+     * @return The name of the provided Roster it comes from, or an 
+     * "Automatic Roster" name for the new ones.
+     */
+    public String targetName(int target) {
+        if (target < this.sourceNames.length)
+            return this.sourceNames[target];
+        return RosterManager.EXTRA_MANAGED_ROSTER_NAME_PREFIX + (target - this.sourceNames.length + 1);
+    }
+    
+    /**
+     * The number of elements a managed Roster will have.
+     * 
+     * @param target the managed Roster number.
+     * @return An int with the managed Roster size.
+     */
+    public int targetSize(int target) {
+        return this.targetSizes[target];
+    }
+    
+    /**
+     * The number of moves within this plan.
+     * 
+     * @return An int with the number of moves.
+     */
+    public int moveCount() {
+        return this.moveLengths.length;
+    }
+    
+    /**
+     * The provided Roster a move takes its elements from.
+     * 
+     * @param move the move number.
+     * @return The provided Roster number.
+     */
+    public int moveSourceRoster(int move) {
+        return this.moveSourceRosters[move];
+    }
+    
+    /**
+     * Where, within the shuffled order of its provided Roster, the first element 
+     * of a move is.
+     * 
+     * @param move the move number.
+     * @return The position of the first element within the shuffled order.
+     */
+    public int moveSourceOffset(int move) {
+        return this.moveSourceOffsets[move];
+    }
+    
+    /**
+     * The managed Roster a move puts its elements in.
+     * 
+     * @param move the move number.
+     * @return The managed Roster number.
+     */
+    public int moveTargetRoster(int move) {
+        return this.moveTargetRosters[move];
+    }
+    
+    /**
+     * Where, within its managed Roster, the first element of a move goes.
+     * 
+     * @param move the move number.
+     * @return The position of the first element within the managed Roster.
+     */
+    public int moveTargetOffset(int move) {
+        return this.moveTargetOffsets[move];
+    }
+    
+    /**
+     * The number of elements a move takes.
+     * 
+     * @param move the move number.
+     * @return An int with the number of elements.
+     */
+    public int moveLength(int move) {
+        return this.moveLengths[move];
+    }
+    
+    /**
+     * Builds the managed Rosters this plan describes out of the given provided 
+     * Rosters, which must be the ones (same names, same sizes, same order) the 
+     * plan was made for. The provided Rosters are left untouched.
+     * 
+     * @param providedRosters the provided Rosters; must be not null.
+     * @return A List with the new managed Rosters.
+     * @throws IllegalArgumentException If the provided Rosters do not match 
+     * the ones this plan was made for.
+     */
+    public List<Roster> materialize(List<Roster> providedRosters) {
+        checkMatches(providedRosters);
+        
+        String[][] targetElements = new String[targetCount()][];
+        for (int target = 0; target < targetElements.length; target++)
+            targetElements[target] = new String[this.targetSizes[target]];
+        for (int move = 0; move < moveCount(); move++) {
+            Roster source = providedRosters.get(this.moveSourceRosters[move]);
+            String[] target = targetElements[this.moveTargetRosters[move]];
+            int permutationOffset = this.permutationOffsets[this.moveSourceRosters[move]] 
+                    + this.moveSourceOffsets[move];
+            int targetOffset = this.moveTargetOffsets[move];
+            for (int i = 0; i < this.moveLengths[move]; i++)
+                target[targetOffset + i] = source.elementAt(this.permutation[permutationOffset + i]);
+        }
+        
+        List<Roster> managedRosters = new ArrayList<>(targetElements.length);
+        for (int target = 0; target < targetElements.length; target++)
+            managedRosters.add(Roster.wrap(targetName(target), targetElements[target]));
+        return managedRosters;
+    }
+
+    /**
+     * Builds the managed Rosters this plan describes out of the given encoded
+     * provided Rosters, which must be the ones (same names, same sizes, same 
+     * order) the plan was made for. The provided IntRosters are left untouched.
+     * 
+     * Only element ids are moved around, so decode the results with the 
+     * dictionary that encoded the provided IntRosters.
+     * 
+     * @param providedRosters the encoded provided Rosters; must be not null.
+     * @return A List with the new, encoded, managed Rosters.
+     * @throws IllegalArgumentException If the provided IntRosters do not match 
+     * the ones this plan was made for.
+     */
+    public List<IntRoster> materializeEncoded(List<IntRoster> providedRosters) {
+        if (providedRosters == null)
+            throw new IllegalArgumentException("You are trying to materialize a plan out of a null list of IntRosters. The list must be not null");
+        if (providedRosters.size() != sourceCount())
+            throw new IllegalArgumentException("You are trying to materialize a plan made for " + sourceCount() + " Rosters out of " + providedRosters.size() + " IntRosters");
+        for (int source = 0; source < sourceCount(); source++) {
+            IntRoster providedRoster = providedRosters.get(source);
+            if (!providedRoster.getName().equals(this.sourceNames[source]) 
+                    || providedRoster.size() != this.sourceSizes[source])
+                throw new IllegalArgumentException("You are trying to materialize a plan out of the IntRoster " + providedRoster.getName() + ", which does not match the Roster " + this.sourceNames[source] + " with " + this.sourceSizes[source] + " elements the plan was made for");
+        }
+        
+        int[][] targetElements = new int[targetCount()][];
+        for (int target = 0; target < targetElements.length; target++)
+            targetElements[target] = new int[this.targetSizes[target]];
+        for (int move = 0; move < moveCount(); move++) {
+            IntRoster source = providedRosters.get(this.moveSourceRosters[move]);
+            int[] target = targetElements[this.moveTargetRosters[move]];
+            int permutationOffset = this.permutationOffsets[this.moveSourceRosters[move]] 
+                    + this.moveSourceOffsets[move];
+            int targetOffset = this.moveTargetOffsets[move];
+            for (int i = 0; i < this.moveLengths[move]; i++)
+                target[targetOffset + i] = source.elementAt(this.permutation[permutationOffset + i]);
+        }
+        
+        List<IntRoster> managedRosters = new ArrayList<>(targetElements.length);
+        for (int target = 0; target < targetElements.length; target++)
+            managedRosters.add(IntRoster.wrap(targetName(target), targetElements[target]));
+        return managedRosters;
+    }
+
+    /**
+     * Builds the managed Rosters this plan describes, out of the provided Rosters
+     * in the given table, which must be the ones (same names, same sizes, same 
+     * order) the plan was made for. The provided table is left untouched.
+     * 
+     * @param providedRosters the table with the provided Rosters; must be not null.
+     * @return A new RosterTable with the managed Rosters.
+     * @throws IllegalArgumentException If the provided Rosters do not match 
+     * the ones this plan was made for.
+     */
+    public RosterTable materialize(RosterTable providedRosters) {
+        if (providedRosters == null)
+            throw new IllegalArgumentException("You are trying to materialize a plan out of a null RosterTable. The table must be not null");
+        if (!Arrays.equals(providedRosters.names(), this.sourceNames) 
+                || !Arrays.equals(providedRosters.sizes(), this.sourceSizes))
+            throw new IllegalArgumentException("You are trying to materialize a plan out of a RosterTable that does not match the Rosters the plan was made for");
+        
+        String[] names = new String[targetCount()];
+        int[] offsets = new int[targetCount() + 1];
+        for (int target = 0; target < names.length; target++) {
+            names[target] = targetName(target);
+            offsets[target + 1] = offsets[target] + this.targetSizes[target];
+        }
+        String[] sourceElements = providedRosters.elements();
+        String[] elements = new String[offsets[names.length]];
+        for (int move = 0; move < moveCount(); move++) {
+            int source = this.moveSourceRosters[move];
+            int sourceOffset = providedRosters.offset(source);
+            int permutationOffset = this.permutationOffsets[source] + this.moveSourceOffsets[move];
+            int targetOffset = offsets[this.moveTargetRosters[move]] + this.moveTargetOffsets[move];
+            for (int i = 0; i < this.moveLengths[move]; i++)
+                elements[targetOffset + i] = 
+                        sourceElements[sourceOffset + this.permutation[permutationOffset + i]];
+        }
+        return RosterTable.wrap(names, offsets, elements);
+    }
+    
+    /**
+     * Creates the managed Rosters this plan describes as views over the given
+     * provided Rosters, which must be the ones (same names, same sizes, same 
+     * order) the plan was made for.
+     * 
+     * No element is copied: each view reads its elements from the provided 
+     * Rosters through this plan, so a rebalance only costs the plan int arrays.
+     * A view gets its own copy of its elements the first time it is modified, 
+     * and a provided Roster gets its own copy the next time it is modified, so 
+     * neither ever sees the changes made to the other.
+     * 
+     * @param providedRosters the provided Rosters; must be not null.
+     * @return A List with the managed Roster views.
+     * @throws IllegalArgumentException If the provided Rosters do not match 
+     * the ones this plan was made for.
+     */
+    public List<Roster> view(List<Roster> providedRosters) {
+        checkMatches(providedRosters);
+        
+        ElementSource[] sources = new ElementSource[sourceCount()];
+        for (int source = 0; source < sources.length; source++)
+            sources[source] = providedRosters.get(source).shareSource();
+        
+        int[] targetMoveStarts = new int[targetCount() + 1];
+        int[] movesByTarget = movesByTarget(this.moveTargetRosters, moveCount(), targetMoveStarts);
+        
+        List<Roster> views = new ArrayList<>(targetCount());
+        for (int target = 0; target < targetCount(); target++)
+            views.add(Roster.view(targetName(target), 
+                    new TargetView(sources, movesByTarget, 
+                            targetMoveStarts[target], targetMoveStarts[target + 1]), 
+                    this.targetSizes[target]));
+        return views;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 59 * hash + Arrays.hashCode(this.sourceNames);
+        hash = 59 * hash + Arrays.hashCode(this.permutation);
+        hash = 59 * hash + Arrays.hashCode(this.targetSizes);
+        hash = 59 * hash + Arrays.hashCode(this.moveSourceRosters);
+        hash = 59 * hash + Arrays.hashCode(this.moveSourceOffsets);
+        return hash;
+    }
+
+    /**
+     * Two plans are equal when they lay out the same provided Rosters exactly 
+     * the same way.
+     * 
+     * @param obj another RosterLayoutPlan.
+     * @return true if both plans move every element to the same place, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final RosterLayoutPlan other = (RosterLayoutPlan) obj;
+        return Arrays.equals(this.sourceNames, other.sourceNames)
+                && Arrays.equals(this.sourceSizes, other.sourceSizes)
+                && Arrays.equals(this.permutation, other.permutation)
+                && Arrays.equals(this.targetSizes, other.targetSizes)
+                && Arrays.equals(this.moveSourceRosters, other.moveSourceRosters)
+                && Arrays.equals(this.moveSourceOffsets, other.moveSourceOffsets)
+                && Arrays.equals(this.moveTargetRosters, other.moveTargetRosters)
+                && Arrays.equals(this.moveTargetOffsets, other.moveTargetOffsets)
+                && Arrays.equals(this.moveLengths, other.moveLengths);
+    }
+
+    @Override
+    public String toString() {
+        return "{sources:" + sourceCount() + ", targets:" + targetCount() 
+                + ", elements:" + this.permutation.length + ", moves:" + moveCount() + "}";
+    }
+    
+    private void checkMatches(List<Roster> providedRosters) {
+        if (providedRosters == null)
+            throw new IllegalArgumentException("You are trying to materialize a plan out of a null list of Rosters. The list must be not null");
+        if (providedRosters.size() != sourceCount())
+            throw new IllegalArgumentException("You are trying to materialize a plan made for " + sourceCount() + " Rosters out of " + providedRosters.size() + " Rosters");
+        for (int source = 0; source < sourceCount(); source++) {
+            Roster providedRoster = providedRosters.get(source);
+            if (!providedRoster.getName().equals(this.sourceNames[source]) 
+                    || providedRoster.size() != this.sourceSizes[source])
+                throw new IllegalArgumentException("You are trying to materialize a plan out of the Roster " + providedRoster.getName() + ", which does not match the Roster " + this.sourceNames[source] + " with " + this.sourceSizes[source] + " elements the plan was made for");
+        }
+    }
+    
+    /*
+    The elements of a managed Roster, read from the provided Rosters through
+    the moves that fill it.
+    */
+    private final class TargetView implements ElementSource {
+        
+        private final ElementSource[] sources;
+        private final int[] movesByTarget;
+        private final int firstMove;
+        private final int lastMove;
+
+        private TargetView(ElementSource[] sources, int[] movesByTarget, int firstMove, int lastMove) {
+            this.sources = sources;
+            this.movesByTarget = movesByTarget;
+            this.firstMove = firstMove;
+            this.lastMove = lastMove;
+        }
+
+        @Override
+        public String elementAt(int index) {
+            int move = moveHolding(index);
+            int source = moveSourceRosters[move];
+            int shuffledPosition = moveSourceOffsets[move] + index - moveTargetOffsets[move];
+            return this.sources[source].elementAt(permutation[permutationOffsets[source] + shuffledPosition]);
+        }
+        
+        /*
+        A binary search for the last move starting at or before the given index.
+        */
+        private int moveHolding(int index) {
+            int low = this.firstMove;
+            int high = this.lastMove - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (moveTargetOffsets[this.movesByTarget[middle]] <= index)
+                    low = middle;
+                else
+                    high = middle - 1;
+            }
+            return this.movesByTarget[low];
+        }
+        
+    }
+    
+    /*
+    The managed Rosters of a lazy layout, built one at a time.
+    */
+    private static final class LazyTargets implements Iterator<Roster> {
+        
+        private final List<Roster> providedRosters;
+        private final int[] sourceSizes;
+        private final int managedRosterSize;
+        private final ShuffleMode shuffleMode;
+        private final ShuffleRuns runs;
+        private final Moves moves;
+        private final int[] targetSizes;
+        private final int[] targetMoveStarts;
+        private final int[] movesByTarget;
+        private final int[] movesLeft;
+        private final Roster[] shuffledRosters;
+        private int shuffledCount;
+        private int shuffledRun;
+        private int target;
+
+        private LazyTargets(List<Roster> providedRosters, int managedRosterSize, 
+                ShuffleMode shuffleMode, RandomSource random) {
+            this.providedRosters = providedRosters;
+            this.sourceSizes = providedRosters.stream().mapToInt(Roster::size).toArray();
+            this.managedRosterSize = managedRosterSize;
+            this.shuffleMode = shuffleMode;
+            this.runs = ShuffleRuns.of(this.sourceSizes, random);
+            this.moves = new Moves(this.sourceSizes.length);
+            this.targetSizes = layOut(this.sourceSizes, managedRosterSize, this.moves);
+            this.targetMoveStarts = new int[this.targetSizes.length + 1];
+            this.movesByTarget = movesByTarget(this.moves.targetRosters, this.moves.count, 
+                    this.targetMoveStarts);
+            this.movesLeft = new int[this.sourceSizes.length];
+            for (int move = 0; move < this.moves.count; move++)
+                this.movesLeft[this.moves.sourceRosters[move]]++;
+            this.shuffledRosters = new Roster[this.sourceSizes.length];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.target < this.targetSizes.length;
+        }
+
+        @Override
+        public Roster next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            
+            String[] elements = new String[this.targetSizes[this.target]];
+            for (int i = this.targetMoveStarts[this.target]; i < this.targetMoveStarts[this.target + 1]; i++) {
+                int move = this.movesByTarget[i];
+                int source = this.moves.sourceRosters[move];
+                Roster shuffledRoster = shuffled(source);
+                for (int j = 0; j < this.moves.lengths[move]; j++)
+                    elements[this.moves.targetOffsets[move] + j] = 
+                            shuffledRoster.elementAt(this.moves.sourceOffsets[move] + j);
+                if (--this.movesLeft[source] == 0)
+                    this.shuffledRosters[source] = null;
+            }
+            
+            String name = this.target < this.sourceSizes.length 
+                    ? this.providedRosters.get(this.target).getName()
+                    : RosterManager.EXTRA_MANAGED_ROSTER_NAME_PREFIX + (this.target - this.sourceSizes.length + 1);
+            this.target++;
+            return Roster.wrap(name, elements);
+        }
+        
+        /*
+        Returns the shuffled copy of a provided Roster, shuffling every provided
+        Roster up to it first, in order.
+        */
+        private Roster shuffled(int source) {
+            while (this.shuffledCount <= source) {
+                while (this.shuffledCount >= this.runs.end(this.shuffledRun))
+                    this.shuffledRun++;
+                Roster shuffledRoster = this.shuffleMode.shuffle(this.providedRosters.get(this.shuffledCount), 
+                        this.runs.random(this.shuffledRun), this.managedRosterSize);
+                if (shuffledRoster.size() != this.sourceSizes[this.shuffledCount])
+                    throw new ConcurrentModificationException("The provided Roster " + shuffledRoster.getName() + " changed while its managed Rosters were being built");
+                this.shuffledRosters[this.shuffledCount++] = shuffledRoster;
+            }
+            return this.shuffledRosters[source];
+        }
+        
+    }
+    
+    /*
+    The moves of a plan as it is being built, in growable int arrays.
+    */
+    private static final class Moves {
+        
+        private int[] sourceRosters;
+        private int[] sourceOffsets;
+        private int[] targetRosters;
+        private int[] targetOffsets;
+        private int[] lengths;
+        private int count;
+
+        private Moves(int capacity) {
+            int initialCapacity = Math.max(capacity, 8);
+            this.sourceRosters = new int[initialCapacity];
+            this.sourceOffsets = new int[initialCapacity];
+            this.targetRosters = new int[initialCapacity];
+            this.targetOffsets = new int[initialCapacity];
+            this.lengths = new int[initialCapacity];
+        }
+        
+        private void add(int sourceRoster, int sourceOffset, int targetRoster, int targetOffset, int length) {
+            if (this.count == this.lengths.length) {
+                int newCapacity = this.count + (this.count >> 1);
+                this.sourceRosters = Arrays.copyOf(this.sourceRosters, newCapacity);
+                this.sourceOffsets = Arrays.copyOf(this.sourceOffsets, newCapacity);
+                this.targetRosters = Arrays.copyOf(this.targetRosters, newCapacity);
+                this.targetOffsets = Arrays.copyOf(this.targetOffsets, newCapacity);
+                this.lengths = Arrays.copyOf(this.lengths, newCapacity);
+            }
+            this.sourceRosters[this.count] = sourceRoster;
+            this.sourceOffsets[this.count] = sourceOffset;
+            this.targetRosters[this.count] = targetRoster;
+            this.targetOffsets[this.count] = targetOffset;
+            this.lengths[this.count] = length;
+            this.count++;
+        }
+        
+    }
+    
+    /*
+    Walks the surplus of every provided Roster, in order: the shuffled positions 
+    from the maximum size up to the Roster size, just like a RosterManager pops 
+    them as leftovers.
+    */
+    private static final class Surplus {
+        
+        private final int[] sourceSizes;
+        private final int managedRosterSize;
+        private int source = -1;
+        private int position;
+
+        private Surplus(int[] sourceSizes, int managedRosterSize) {
+            this.sourceSizes = sourceSizes;
+            this.managedRosterSize = managedRosterSize;
+            nextSource();
+        }
+        
+        private boolean isLeft() {
+            return this.source < this.sourceSizes.length;
+        }
+        
+        /*
+        Moves surplus elements to the given target, from the given offset on, 
+        until either the target is full or there is no surplus left. Returns the
+        new size of the target.
+        */
+        private int moveTo(Moves moves, int target, int targetSize, int managedRosterSize) {
+            while (isLeft() && targetSize < managedRosterSize) {
+                int length = Math.min(managedRosterSize - targetSize, 
+                        this.sourceSizes[this.source] - this.position);
+                moves.add(this.source, this.position, target, targetSize, length);
+                targetSize += length;
+                this.position += length;
+                if (this.position == this.sourceSizes[this.source])
+                    nextSource();
+            }
+            return targetSize;
+        }
+        
+        private void nextSource() {
+            do {
+                this.source++;
+            } while (this.source < this.sourceSizes.length 
+                    && this.sourceSizes[this.source] <= this.managedRosterSize);
+            this.position = this.managedRosterSize;
+        }
+        
+    }
+    
+}
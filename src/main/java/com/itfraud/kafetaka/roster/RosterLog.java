@@ -0,0 +1,544 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * A RosterLog makes Roster changes durable: an append only, write-ahead log 
+ * of the Rosters being managed and unmanaged, and of the elements being pushed
+ * and popped.
+ * 
+ * Appending is cheap: it just queues the change. A single writer thread takes
+ * every change queued so far, writes them all in one go, and syncs the file 
+ * once for the whole batch, however big; the futures the appends returned 
+ * complete when their batch is on disk. Wait for them, or for sync, only where
+ * durability matters.
+ * 
+ * Every so many changes, the writer thread checkpoints: it writes every logged
+ * Roster into a MappedRosterStore and starts a new, empty, log. Opening a 
+ * RosterLog loads the last checkpoint and replays the log written after it, 
+ * ignoring a last change that was only half written; recoveredRosters gives 
+ * the result back. To checkpoint, the writer thread keeps its own copy of the 
+ * logged Rosters, sharing the elements with the application ones.
+ * 
+ * The directory holds checkpoint-N.store and log-N files, N being the 
+ * checkpoint generation. Only the last generation is kept.
+ * A RosterLog is thread safe.
+ * 
+ * @author Norville Rogers
+ */
+public final class RosterLog implements AutoCloseable {
+    
+    /**
+     * The number of changes between checkpoints, if none is given.
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+    
+    private static final byte MANAGE = 1;
+    private static final byte UNMANAGE = 2;
+    private static final byte PUSH = 3;
+    private static final byte POP = 4;
+    private static final byte CHECKPOINT = 5;
+    private static final byte CLOSE = 6;
+    private static final byte SYNC = 7;
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+    
+    private final Path directory;
+    private final int checkpointInterval;
+    private final Map<String, Roster> loggedRosters;
+    private final List<Roster> recoveredRosters;
+    private final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private long generation;
+    private FileChannel channel;
+    private DataOutputStream out;
+    private int changesSinceCheckpoint;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    
+    private RosterLog(Path directory, int checkpointInterval, long generation, 
+            Map<String, Roster> loggedRosters, FileChannel channel) {
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        this.generation = generation;
+        this.loggedRosters = loggedRosters;
+        this.recoveredRosters = new ArrayList<>(loggedRosters.size());
+        loggedRosters.values().forEach(roster -> this.recoveredRosters.add(roster.copy()));
+        this.channel = channel;
+        this.out = outputTo(channel);
+        this.writer = new Thread(this::write, "roster-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    /**
+     * Opens the log within the given directory, creating it if needed, and 
+     * recovers the logged Rosters, checkpointing every DEFAULT_CHECKPOINT_INTERVAL 
+     * changes.
+     * 
+     * @param directory the log directory; must be not null.
+     * @return The opened log, which must be closed when done.
+     * @throws IllegalArgumentException If the directory is null.
+     * @throws IOException If the log cannot be read or written.
+     */
+    public static RosterLog open(Path directory) throws IOException {
+        return open(directory, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+    
+    /**
+     * Opens the log within the given directory, creating it if needed, and 
+     * recovers the logged Rosters.
+     * 
+     * @param directory the log directory; must be not null.
+     * @param checkpointInterval the number of changes between checkpoints; must
+     * be greater than zero.
+     * @return The opened log, which must be closed when done.
+     * @throws IllegalArgumentException If the directory is null, or the 
+     * interval is not greater than zero.
+     * @throws IOException If the log cannot be read or written.
+     */
+    public static RosterLog open(Path directory, int checkpointInterval) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("You are trying to open a RosterLog with a null directory. The directory must be not null");
+        if (checkpointInterval <= 0)
+            throw new IllegalArgumentException("You are trying to open a RosterLog with a checkpoint interval of: " + checkpointInterval + ". It must be greater than zero");
+        
+        Files.createDirectories(directory);
+        long generation = lastCheckpoint(directory);
+        Map<String, Roster> rosters = new LinkedHashMap<>();
+        if (generation > 0)
+            try (MappedRosterStore store = MappedRosterStore.open(checkpointFile(directory, generation))) {
+                for (Roster roster : store.rosters())
+                    rosters.put(roster.getName(), roster.copy());
+            }
+        FileChannel channel = FileChannel.open(logFile(directory, generation), 
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            replay(channel, rosters);
+            deleteOlderGenerations(directory, generation);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new RosterLog(directory, checkpointInterval, generation, rosters, channel);
+    }
+    
+    /**
+     * The Rosters recovered when this log was opened, in the order they were 
+     * first managed, with their elements as the log left them.
+     * 
+     * @return A List with new Rosters, ready to be managed again.
+     */
+    public List<Roster> recoveredRosters() {
+        List<Roster> rosters = new ArrayList<>(this.recoveredRosters.size());
+        this.recoveredRosters.forEach(roster -> rosters.add(roster.copy()));
+        return rosters;
+    }
+    
+    /**
+     * Logs that a Roster is being managed, with the elements it holds right now.
+     * 
+     * @param roster the managed Roster; must be not null.
+     * @return A future which completes once the change is on disk.
+     * @throws IllegalArgumentException If the Roster is null.
+     * @throws IllegalStateException If this log is closed, or it failed to write.
+     */
+    public CompletableFuture<Void> logManage(Roster roster) {
+        if (roster == null)
+            throw new IllegalArgumentException("You are trying to log a null Roster. The Roster must be not null");
+        
+        String[] elements = new String[roster.size()];
+        for (int i = 0; i < elements.length; i++)
+            elements[i] = roster.elementAt(i);
+        return append(new Change(MANAGE, roster.getName(), elements));
+    }
+    
+    /**
+     * Logs that a Roster is not managed anymore.
+     * 
+     * @param rosterName the Roster name; must be neither null nor empty.
+     * @return A future which completes once the change is on disk.
+     * @throws IllegalArgumentException If the name is null or empty.
+     * @throws IllegalStateException If this log is closed, or it failed to write.
+     */
+    public CompletableFuture<Void> logUnmanage(String rosterName) {
+        checkName(rosterName);
+        return append(new Change(UNMANAGE, rosterName, null));
+    }
+    
+    /**
+     * Logs that an element has been pushed to a Roster.
+     * 
+     * @param rosterName the Roster name; must be neither null nor empty.
+     * @param element the element pushed; must be neither null nor empty.
+     * @return A future which completes once the change is on disk.
+     * @throws IllegalArgumentException If the name or the element are null or empty.
+     * @throws IllegalStateException If this log is closed, or it failed to write.
+     */
+    public CompletableFuture<Void> logPush(String rosterName, String element) {
+        checkName(rosterName);
+        if (element == null || element.isEmpty())
+            throw new IllegalArgumentException("You are trying to log a null or empty element. The element must be neither null nor empty");
+        
+        return append(new Change(PUSH, rosterName, new String[] {element}));
+    }
+    
+    /**
+     * Logs that an element has been popped from a Roster.
+     * 
+     * @param rosterName the Roster name; must be neither null nor empty.
+     * @return A future which completes once the change is on disk.
+     * @throws IllegalArgumentException If the name is null or empty.
+     * @throws IllegalStateException If this log is closed, or it failed to write.
+     */
+    public CompletableFuture<Void> logPop(String rosterName) {
+        checkName(rosterName);
+        return append(new Change(POP, rosterName, null));
+    }
+    
+    /**
+     * Checkpoints as soon as the changes logged so far are on disk, instead 
+     * of waiting for the checkpoint interval.
+     * 
+     * @return A future which completes once the checkpoint is on disk.
+     * @throws IllegalStateException If this log is closed, or it failed to write.
+     */
+    public CompletableFuture<Void> checkpoint() {
+        return append(new Change(CHECKPOINT, null, null));
+    }
+    
+    /**
+     * Waits until every change logged so far is on disk.
+     * 
+     * @throws IllegalStateException If this log is closed, or it failed to write.
+     * @throws UncheckedIOException If the changes could not be written.
+     */
+    public void sync() {
+        try {
+            append(new Change(SYNC, null, null)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw (UncheckedIOException) e.getCause();
+            throw e;
+        }
+    }
+    
+    /**
+     * Writes every change logged so far, stops the writer thread and closes
+     * the log file. Closing it again does nothing.
+     * 
+     * @throws IOException If the last changes could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.closed = true;
+        }
+        
+        this.changes.add(new Change(CLOSE, null, null));
+        boolean interrupted = false;
+        while (this.writer.isAlive())
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        this.channel.close();
+        if (this.failure != null)
+            throw this.failure;
+    }
+
+    @Override
+    public String toString() {
+        return "{directory:" + this.directory + ", generation:" + this.generation + "}";
+    }
+    
+    /*
+    Queues a change for the writer thread.
+    */
+    private synchronized CompletableFuture<Void> append(Change change) {
+        if (this.closed)
+            throw new IllegalStateException("You are trying to log a change to the closed RosterLog " + this.directory);
+        if (this.failure != null)
+            throw new IllegalStateException("You are trying to log a change to the RosterLog " + this.directory + ", which failed to write", this.failure);
+        
+        this.changes.add(change);
+        return change.done;
+    }
+    
+    /*
+    The writer thread: takes every change queued so far, writes them, syncs 
+    once, and only then completes their futures.
+    */
+    private void write() {
+        List<Change> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(this.changes.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            this.changes.drainTo(batch);
+            
+            boolean checkpoint = false;
+            try {
+                for (Change change : batch) {
+                    if (change.type == CLOSE)
+                        running = false;
+                    else if (change.type == CHECKPOINT)
+                        checkpoint = true;
+                    else if (change.type != SYNC)
+                        writeChange(change);
+                }
+                this.out.flush();
+                this.channel.force(false);
+                if (checkpoint || this.changesSinceCheckpoint >= this.checkpointInterval)
+                    writeCheckpoint();
+                batch.forEach(change -> change.done.complete(null));
+            } catch (IOException e) {
+                synchronized (this) {
+                    this.failure = e;
+                }
+                batch.forEach(change -> change.done.completeExceptionally(new UncheckedIOException(e)));
+                this.changes.forEach(change -> change.done.completeExceptionally(new UncheckedIOException(e)));
+                running = false;
+            }
+            batch.clear();
+        }
+    }
+    
+    private void writeChange(Change change) throws IOException {
+        this.recordBytes.reset();
+        this.record.writeByte(change.type);
+        writeString(this.record, change.name);
+        if (change.type == MANAGE)
+            this.record.writeInt(change.elements.length);
+        if (change.elements != null)
+            for (String element : change.elements)
+                writeString(this.record, element);
+        
+        this.crc.reset();
+        this.crc.update(this.recordBytes.toByteArray());
+        this.out.writeInt(this.recordBytes.size());
+        this.out.writeInt((int) this.crc.getValue());
+        this.recordBytes.writeTo(this.out);
+        apply(this.loggedRosters, change.type, change.name, change.elements);
+        this.changesSinceCheckpoint++;
+    }
+    
+    /*
+    Writes every logged Roster into the next generation checkpoint, starts the
+    next generation log, and only once both are safely on disk, directory 
+    entries included, drops the previous generation.
+    */
+    private void writeCheckpoint() throws IOException {
+        long next = this.generation + 1;
+        MappedRosterStore.write(checkpointFile(this.directory, next), this.loggedRosters.values());
+        FileChannel nextChannel = FileChannel.open(logFile(this.directory, next), 
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            nextChannel.force(true);
+            MappedRosterStore.syncDirectory(this.directory);
+        } catch (IOException e) {
+            nextChannel.close();
+            throw e;
+        }
+        this.channel.close();
+        this.channel = nextChannel;
+        this.out = outputTo(nextChannel);
+        this.generation = next;
+        this.changesSinceCheckpoint = 0;
+        deleteOlderGenerations(this.directory, next);
+    }
+    
+    /*
+    Applies the logged changes to the given Rosters, and truncates the log 
+    right after the last change that was completely written.
+    */
+    private static void replay(FileChannel channel, Map<String, Roster> rosters) throws IOException {
+        long position = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        CRC32 crc = new CRC32();
+        while (true) {
+            byte[] bytes;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES)
+                    break;
+                bytes = new byte[length];
+                in.readFully(bytes);
+                crc.reset();
+                crc.update(bytes);
+                if ((int) crc.getValue() != checksum)
+                    break;
+            } catch (EOFException halfWritten) {
+                break;
+            }
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte type = record.readByte();
+            String name = readString(record);
+            String[] elements = null;
+            if (type == MANAGE) {
+                elements = new String[record.readInt()];
+                for (int i = 0; i < elements.length; i++)
+                    elements[i] = readString(record);
+            } else if (type == PUSH)
+                elements = new String[] {readString(record)};
+            apply(rosters, type, name, elements);
+            position += 2 * Integer.BYTES + bytes.length;
+        }
+        channel.truncate(position);
+        channel.position(position);
+    }
+    
+    /*
+    Applies a change to the given Rosters. Changes to Rosters which are not 
+    there, or pops from empty Rosters, are ignored, just like they would have
+    failed when they were made.
+    */
+    private static void apply(Map<String, Roster> rosters, byte type, String name, String[] elements) {
+        Roster roster = rosters.get(name);
+        if (type == MANAGE) {
+            if (roster == null)
+                rosters.put(name, Roster.wrap(name, elements));
+        } else if (type == UNMANAGE)
+            rosters.remove(name);
+        else if (roster != null && type == PUSH)
+            roster.pushFrom(elements, 0, 1);
+        else if (roster != null && type == POP && !roster.isEmpty())
+            roster.pop();
+    }
+    
+    private static long lastCheckpoint(Path directory) throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "checkpoint-*.store")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    last = Math.max(last, Long.parseLong(
+                            name.substring("checkpoint-".length(), name.length() - ".store".length())));
+                } catch (NumberFormatException notOurs) {
+                    // Some other file, leave it alone
+                }
+            }
+        }
+        return last;
+    }
+    
+    private static void deleteOlderGenerations(Path directory, long generation) throws IOException {
+        for (long older = generation - 1; older >= 0; older--) {
+            boolean deleted = Files.deleteIfExists(logFile(directory, older));
+            deleted |= Files.deleteIfExists(checkpointFile(directory, older));
+            if (!deleted)
+                break;
+        }
+    }
+    
+    private static Path checkpointFile(Path directory, long generation) {
+        return directory.resolve("checkpoint-" + generation + ".store");
+    }
+    
+    private static Path logFile(Path directory, long generation) {
+        return directory.resolve("log-" + generation);
+    }
+    
+    private static DataOutputStream outputTo(FileChannel channel) {
+        OutputStream stream = Channels.newOutputStream(channel);
+        return new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+    }
+    
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void checkName(String rosterName) {
+        if (rosterName == null || rosterName.isEmpty())
+            throw new IllegalArgumentException("You are trying to log a change to a Roster with a null or empty name. The roster name must be neither null nor empty");
+    }
+    
+    /*
+    A change waiting for the writer thread.
+    */
+    private static final class Change {
+        
+        private final byte type;
+        private final String name;
+        private final String[] elements;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        
+        private Change(byte type, String name, String[] elements) {
+            this.type = type;
+            this.name = name;
+            this.elements = elements;
+        }
+        
+    }
+    
+}
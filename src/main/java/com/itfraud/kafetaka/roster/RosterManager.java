@@ -27,11 +27,34 @@ For more information, please refer to <http://unlicense.org>
 package com.itfraud.kafetaka.roster;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A RosterManager takes a collection of Rosters (from now on, we will call
@@ -50,9 +73,14 @@ import java.util.stream.Collectors;
  * Let's take a look at a RosterManager main features:
  *  - It allows you to manage one or more provided Rosters.
  *  - It doesn't allow you to manage the same Roster more that once.
+ *  - It allows you to manage many Rosters at once, far more cheaply than 
+ *    one by one.
+ *  - It allows you to stop managing a Roster, and to check whether a Roster
+ *    is being managed, by its name.
  *  - It allows you to set up the maximum size for the managed Rosters.
  *  - It will create a managed Roster for each provided Roster and it will have the
- *    same name.
+ *    same name. The managed Rosters keep the order in which the provided
+ *    Rosters were added.
  *  - If a provided Roster size is greater than the RosterManager maximum, 
  *    the manager will take the surplus elements and it will 
  *    move those elements to another managed Roster where there is room left. 
@@ -65,16 +93,57 @@ import java.util.stream.Collectors;
  *    elements, you will never know which ones are going to be moved to the next 
  *    managed Roster in the pool. Actually, a different set will be moved every single
  *    time you manage the provided Rosters.
+ *  - Optionally, it rebalances incrementally: a provided Roster is only shuffled 
+ *    again when it has changed since the previous rebalance, and if nothing has 
+ *    changed at all, the previous managed Rosters are returned as they are.
+ *    This mode trades the fresh shuffle on every call for speed.
+ *  - It allows you to shuffle only the surplus elements (see ShuffleMode), when
+ *    you do not care about the order of the elements within a managed Roster.
+ *  - It can hand out the managed Rosters as a lazy stream, building each one 
+ *    only when it is reached.
+ *  - It can rebalance asynchronously, on a given Executor, sharing a single
+ *    rebalance among the callers that ask for the same one at the same time.
+ *  - It can publish the managed Rosters to reactive subscribers, building 
+ *    them only as they are requested.
+ *  - It can work out a RosterLayoutPlan, which describes the managed Rosters 
+ *    without moving any element, and build them later on, if ever, either as
+ *    new Rosters or as views that share the elements of the provided Rosters.
+ *  - It can rebalance a whole RosterTable, a compact way to hold millions of
+ *    small Rosters, without creating a Roster object per Roster.
+ *  - It can rebalance IntRosters, whose elements are ids handed out by an 
+ *    ElementDictionary, moving plain ints around instead of Strings.
+ *  - It allows you to choose the source of randomness for the shuffles, and
+ *    hence to seed it to get the same shuffles again.
+ *  - Optionally, it shuffles the provided Rosters in parallel on a ForkJoinPool,
+ *    or on virtual threads.
+ *    The managed Rosters still come out in the provided order.
+ * 
+ * Adding, removing and looking for Rosters is thread safe, but rebalancing is
+ * not meant to be done from several threads at once. If you need that, take a 
+ * look at ConcurrentRosterManager.
  * 
  * @author Norville Rogers
  */
 public class RosterManager {
     
-    private static final String EXTRA_MANAGED_ROSTER_NAME_PREFIX = "Automatic Roster";
+    static final String EXTRA_MANAGED_ROSTER_NAME_PREFIX = "Automatic Roster";
+    private static final BooleanSupplier NEVER_CANCELLED = () -> false;
+    private static final Executor VIRTUAL_THREADS = 
+            task -> Thread.ofVirtual().name("roster-rebalance").start(task);
    
     private final int managedRosterSize;
-    private final List<Roster> providedRosters = Collections.synchronizedList(new ArrayList<>());
+    private final RosterRegistry providedRosters;
     private List<Roster> managedRosters;
+    private volatile Snapshot snapshot;
+    private volatile boolean incrementalRebalancing;
+    private volatile ForkJoinPool shufflePool;
+    private volatile boolean virtualThreadShuffle;
+    private volatile RandomSource randomSource = RandomSource.threadLocal();
+    private volatile ShuffleMode shuffleMode = ShuffleMode.FULL;
+    private final Map<String, ShuffledRoster> shuffledRosters = new HashMap<>();
+    private List<Roster> lastProvidedRosters = Collections.emptyList();
+    private int[] lastManagedRosterModifications;
+    private final AtomicReference<InFlightRebalance> inFlightRebalance = new AtomicReference<>();
 
     /**
      * Creates a new RosterManager instance.
@@ -86,10 +155,15 @@ public class RosterManager {
      * is not greater than zero.
      */
     public RosterManager(int rosterMaxNumberOfElements) {
+        this(rosterMaxNumberOfElements, new SynchronizedRosterRegistry());
+    }
+    
+    RosterManager(int rosterMaxNumberOfElements, RosterRegistry providedRosters) {
         if (rosterMaxNumberOfElements <= 0)
             throw new IllegalArgumentException("You are trying to create a RosterManager with a roster max size of: " + rosterMaxNumberOfElements + ". It must be greater than zero");
         
         this.managedRosterSize = rosterMaxNumberOfElements;
+        this.providedRosters = providedRosters;
     }
 
     /**
@@ -106,10 +180,216 @@ public class RosterManager {
         if (roster == null)
             throw new IllegalArgumentException("You are trying to add a null roster to a RosterManager. The roster must be not null");
         
-        if (this.providedRosters.contains(roster))
+        if (!this.providedRosters.add(roster))
             throw new IllegalArgumentException("You are trying to add a roster twice. You can only add a roster once to a RosterManager");
         
-        this.providedRosters.add(roster);
+        return this;
+    }
+    
+    /**
+     * Adds many rosters to the pool of managed rosters at once, in order.
+     * 
+     * It checks every roster name in a single hashed pass, and adds them all 
+     * together, so it is much cheaper than adding them one by one. Either all
+     * of them are added, or none is.
+     * 
+     * @param rosters the rosters we want to add to the pool; neither the 
+     * collection nor any of its rosters may be null
+     * @return A reference to this RosterManager
+     * @throws IllegalArgumentException If the collection, or any of its rosters,
+     * is null, if it holds the same roster twice, or if any of its rosters has
+     * been already added. In that case, no roster is added.
+     */
+    public RosterManager manageAll(Collection<Roster> rosters) {
+        if (rosters == null)
+            throw new IllegalArgumentException("You are trying to add a null collection of rosters to a RosterManager. The collection must be not null");
+        
+        return manageBatch(new ArrayList<>(rosters));
+    }
+    
+    /**
+     * Adds many rosters to the pool of managed rosters at once, in the order 
+     * the stream gives them.
+     * 
+     * It works just like manageAll(Collection) does.
+     * 
+     * @param rosters the rosters we want to add to the pool; neither the 
+     * stream nor any of its rosters may be null
+     * @return A reference to this RosterManager
+     * @throws IllegalArgumentException If the stream, or any of its rosters,
+     * is null, if it holds the same roster twice, or if any of its rosters has
+     * been already added. In that case, no roster is added.
+     */
+    public RosterManager manageAll(Stream<Roster> rosters) {
+        if (rosters == null)
+            throw new IllegalArgumentException("You are trying to add a null stream of rosters to a RosterManager. The stream must be not null");
+        
+        return manageBatch(rosters.collect(Collectors.toCollection(ArrayList::new)));
+    }
+    
+    /*
+    Checks the given batch for nulls and duplicates within itself, and then 
+    hands it over to the registry, which checks it against the rosters already 
+    there and adds it in one go.
+    */
+    private RosterManager manageBatch(List<Roster> rosters) {
+        Set<String> rosterNames = new HashSet<>((int) Math.min(Integer.MAX_VALUE, rosters.size() * 4L / 3 + 1));
+        for (Roster roster : rosters) {
+            if (roster == null)
+                throw new IllegalArgumentException("You are trying to add a null roster to a RosterManager. The roster must be not null");
+            if (!rosterNames.add(roster.getName()))
+                throw new IllegalArgumentException("You are trying to add the roster " + roster.getName() + " twice. You can only add a roster once to a RosterManager");
+        }
+        
+        if (!this.providedRosters.addAll(rosters))
+            throw new IllegalArgumentException("You are trying to add a roster twice. You can only add a roster once to a RosterManager");
+        
+        return this;
+    }
+    
+    /**
+     * Tests if a roster is in the pool of managed rosters.
+     * 
+     * @param rosterName the name of the roster we are looking for; must be not null
+     * @return true if and only if a roster with the given name has been added 
+     * to this RosterManager; false otherwise.
+     * @throws IllegalArgumentException If the provided rosterName is null
+     */
+    public boolean isManaged(String rosterName) {
+        if (rosterName == null)
+            throw new IllegalArgumentException("You are trying to look for a roster with a null name. The roster name must be not null");
+        
+        return this.providedRosters.contains(rosterName);
+    }
+    
+    /**
+     * Removes a roster from the pool of managed rosters.
+     * 
+     * @param rosterName the name of the roster we want to remove from the pool; 
+     * must be not null
+     * @return A reference to this RosterManager
+     * @throws IllegalArgumentException If the provided rosterName is null
+     * @throws IllegalArgumentException If there is no roster with that name in the pool
+     */
+    public RosterManager unmanage(String rosterName) {
+        if (rosterName == null)
+            throw new IllegalArgumentException("You are trying to remove a roster with a null name. The roster name must be not null");
+        
+        if (!this.providedRosters.remove(rosterName))
+            throw new IllegalArgumentException("You are trying to remove the roster " + rosterName + ", but it is not managed by this RosterManager");
+        
+        return this;
+    }
+
+    /**
+     * Turns the incremental rebalancing on or off. It is off by default.
+     * 
+     * When it is on, getManagedRosters only shuffles again the provided Rosters 
+     * that have changed (an element has been pushed or popped) since the previous 
+     * call, reusing the previous shuffle for all the others. If neither the 
+     * provided Rosters nor the managed Rosters returned last time have changed,
+     * it returns those same managed Rosters straight away.
+     * 
+     * @param incremental true to rebalance incrementally, false to shuffle
+     * every provided Roster on every call.
+     * @return A reference to this RosterManager
+     */
+    public RosterManager useIncrementalRebalancing(boolean incremental) {
+        this.incrementalRebalancing = incremental;
+        if (!incremental)
+            forgetLastRebalance();
+        return this;
+    }
+
+    /**
+     * Sets the source of randomness for the shuffles. By default, it is 
+     * RandomSource.threadLocal().
+     * 
+     * Use a seeded source, such as RandomSource.splittable(seed), to get the
+     * same managed rosters out of the same provided rosters every time.
+     * 
+     * @param randomSource the source to shuffle with; must be not null.
+     * @return A reference to this RosterManager
+     * @throws IllegalArgumentException If the provided randomSource is null
+     */
+    public RosterManager useRandomSource(RandomSource randomSource) {
+        if (randomSource == null)
+            throw new IllegalArgumentException("You are trying to shuffle with a null RandomSource. The RandomSource must be not null");
+        
+        this.randomSource = randomSource;
+        return this;
+    }
+    
+    /**
+     * Sets how the provided rosters are shuffled. By default, it is ShuffleMode.FULL.
+     * 
+     * @param shuffleMode the way to shuffle; must be not null.
+     * @return A reference to this RosterManager
+     * @throws IllegalArgumentException If the provided shuffleMode is null
+     */
+    public RosterManager useShuffleMode(ShuffleMode shuffleMode) {
+        if (shuffleMode == null)
+            throw new IllegalArgumentException("You are trying to use a null ShuffleMode. The ShuffleMode must be not null");
+        
+        this.shuffleMode = shuffleMode;
+        if (this.incrementalRebalancing)
+            forgetLastRebalance();
+        return this;
+    }
+    
+    /**
+     * Shuffles the provided rosters in parallel, on the given pool.
+     * 
+     * The provided rosters are shuffled in runs of about ten thousand elements, 
+     * each one drawing from its own random source, split from the one this 
+     * RosterManager uses, so that tasks do not compete for it. The runs are the
+     * same a sequential shuffle makes, so the managed rosters come out just like
+     * with the sequential shuffle, and a seeded random source gives the very 
+     * same shuffles.
+     * 
+     * @param pool the ForkJoinPool that will run the shuffle; must be not null.
+     * ForkJoinPool.commonPool() is a good choice unless you want to keep the 
+     * shuffle away from other parallel work.
+     * @return A reference to this RosterManager
+     * @throws IllegalArgumentException If the provided pool is null
+     */
+    public RosterManager useParallelShuffle(ForkJoinPool pool) {
+        if (pool == null)
+            throw new IllegalArgumentException("You are trying to shuffle on a null ForkJoinPool. The pool must be not null");
+        
+        this.shufflePool = pool;
+        this.virtualThreadShuffle = false;
+        return this;
+    }
+    
+    /**
+     * Shuffles the provided rosters in parallel, on virtual threads: a thread
+     * per big provided roster, or per run of small provided rosters.
+     * 
+     * Unlike a parallel shuffle on a ForkJoinPool, it does not tie up any 
+     * pool thread, so it suits many RosterManagers, say one per tenant, 
+     * rebalancing at once. Each virtual thread shuffles a run of about ten 
+     * thousand elements with its own random source, just like a parallel shuffle
+     * on a ForkJoinPool does, so the managed rosters come out just like with the
+     * sequential shuffle, and a seeded random source gives the very same shuffles.
+     * 
+     * @return A reference to this RosterManager
+     */
+    public RosterManager useVirtualThreadShuffle() {
+        this.virtualThreadShuffle = true;
+        this.shufflePool = null;
+        return this;
+    }
+    
+    /**
+     * Shuffles the provided rosters one after the other, on the calling thread.
+     * This is the default.
+     * 
+     * @return A reference to this RosterManager
+     */
+    public RosterManager useSequentialShuffle() {
+        this.shufflePool = null;
+        this.virtualThreadShuffle = false;
         return this;
     }
 
@@ -120,45 +400,461 @@ public class RosterManager {
      * does not manage any rosters.
      */
     public List<Roster> getManagedRosters() {
-        setUpManagedRosters();
-        shuffleProvidedRosters();
-        Queue<String> leftovers = fitProvidedRostersToMaximumSize();
-        if (thereAre(leftovers))
-            allocateWithinManagedRosters(leftovers);
-        if (thereAre(leftovers))
-            createNewManagedRostersFor(leftovers);
-        return Collections.unmodifiableList(this.managedRosters);
+        boolean incremental = this.incrementalRebalancing;
+        List<Roster> rosters = providedRosters();
+        if (incremental && nothingChangedSinceLastRebalance(rosters))
+            return Collections.unmodifiableList(this.managedRosters);
+        
+        List<Roster> rebalancedRosters = rebalance(rosters, incremental, rebalanceRandomSource(), NEVER_CANCELLED);
+        if (incremental)
+            rememberLastRebalance(rosters, rebalancedRosters);
+        return Collections.unmodifiableList(rebalancedRosters);
+    }
+    
+    /**
+     * Returns the managed rosters as a lazy stream, which builds each managed
+     * roster only when it is reached.
+     * 
+     * The managed rosters are the same getManagedRosters returns, in the same
+     * order, but the first ones are ready as soon as the provided rosters they
+     * take elements from have been shuffled, and the new "Automatic Roster" ones
+     * are created one at a time. A shuffled provided roster is dropped as soon 
+     * as every managed roster taking elements from it has been built, so a 
+     * consumer that writes out each managed roster and lets it go keeps the 
+     * memory in use down.
+     * 
+     * The provided rosters are the ones managed when this method is invoked, 
+     * and they must not be modified until the stream is consumed. The stream
+     * always shuffles sequentially, and never rebalances incrementally.
+     * 
+     * @return A sequential, ordered Stream of new Roster objects, empty if this
+     * RosterManager does not manage any rosters.
+     * @throws java.util.ConcurrentModificationException When consumed, if a 
+     * provided roster changed size since the stream was created.
+     */
+    public Stream<Roster> streamManagedRosters() {
+        Iterator<Roster> managedRosters = RosterLayoutPlan.lazyMaterialize(providedRosters(), 
+                this.managedRosterSize, this.shuffleMode, rebalanceRandomSource());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(managedRosters, 
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    
+    /**
+     * Publishes the managed rosters to reactive subscribers, building each 
+     * managed roster only once a subscriber has requested it.
+     * 
+     * Every subscriber gets the managed rosters of a rebalance of its own, 
+     * laid out lazily just like streamManagedRosters does, starting with its 
+     * first request. The managed rosters are emitted on the thread that 
+     * requests them.
+     * 
+     * @return A Flow.Publisher of new Roster objects.
+     */
+    public Flow.Publisher<Roster> publishManagedRosters() {
+        return publishManagedRosters(Runnable::run);
+    }
+    
+    /**
+     * Publishes the managed rosters to reactive subscribers, building each 
+     * managed roster only once a subscriber has requested it.
+     * 
+     * Every subscriber gets the managed rosters of a rebalance of its own, 
+     * laid out lazily just like streamManagedRosters does, starting with its 
+     * first request. So, however many managed rosters there are, only those 
+     * requested and not yet emitted are ever waiting in memory. The managed 
+     * rosters are emitted on the given executor, one subscriber signal at a time.
+     * 
+     * @param executor where the managed rosters are built and emitted; must be not null.
+     * @return A Flow.Publisher of new Roster objects.
+     * @throws IllegalArgumentException If the executor is null.
+     */
+    public Flow.Publisher<Roster> publishManagedRosters(Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("You are trying to publish the managed Rosters on a null Executor. The executor must be not null");
+        
+        return new ManagedRosterPublisher(() -> RosterLayoutPlan.lazyMaterialize(providedRosters(), 
+                this.managedRosterSize, this.shuffleMode, rebalanceRandomSource()), executor);
+    }
+    
+    /**
+     * Works out where every element of the provided rosters would go, without
+     * moving any of them.
+     * 
+     * The plan follows the same rules, and draws from the same random source, 
+     * as getManagedRosters. Materializing it gives a new set of managed rosters.
+     * 
+     * @return A RosterLayoutPlan for the rosters managed right now.
+     */
+    public RosterLayoutPlan getLayoutPlan() {
+        return layoutPlanFor(providedRosters());
+    }
+    
+    /**
+     * Returns the list of managed rosters as views over the provided rosters.
+     * 
+     * The managed rosters are laid out just like getManagedRosters does, but 
+     * none of the elements is copied: each managed roster reads its elements 
+     * from the provided rosters, through a RosterLayoutPlan. A managed roster 
+     * only gets a copy of its elements when it is modified, and so does a 
+     * provided roster, so neither ever sees the changes made to the other.
+     * 
+     * @return A List containing Roster views or an empty list if this RosterManager
+     * does not manage any rosters.
+     */
+    public List<Roster> getManagedRosterViews() {
+        List<Roster> rosters = providedRosters();
+        return Collections.unmodifiableList(layoutPlanFor(rosters).view(rosters));
+    }
+    
+    /**
+     * Rebalances all the Rosters within a RosterTable at once, following the 
+     * same rules as getManagedRosters, into a new RosterTable.
+     * 
+     * The table Rosters are not added to this RosterManager: only its maximum
+     * size, shuffle mode and random source are used. No Roster object is created
+     * along the way.
+     * 
+     * @param providedRosters the table with the Rosters to rebalance; must be not null.
+     * @return A new RosterTable with the managed Rosters.
+     * @throws IllegalArgumentException If the provided table is null
+     */
+    public RosterTable rebalance(RosterTable providedRosters) {
+        if (providedRosters == null)
+            throw new IllegalArgumentException("You are trying to rebalance a null RosterTable. The table must be not null");
+        
+        return RosterLayoutPlan.plan(providedRosters.names(), providedRosters.sizes(), 
+                this.managedRosterSize, this.shuffleMode, rebalanceRandomSource())
+                .materialize(providedRosters);
+    }
+    
+    /**
+     * Rebalances Rosters encoded by an ElementDictionary, following the same 
+     * rules as getManagedRosters, into new IntRosters.
+     * 
+     * Only int ids are shuffled and moved around, which keeps the rebalance 
+     * cache friendly and its garbage small. Decode the results into Rosters, 
+     * with the same dictionary, as they are needed. 
+     * 
+     * The IntRosters are not added to this RosterManager: only its maximum size,
+     * shuffle mode and random source are used.
+     * 
+     * @param providedRosters the encoded Rosters to rebalance; neither the list
+     * nor any of its IntRosters may be null.
+     * @return A List with the new, encoded, managed Rosters.
+     * @throws IllegalArgumentException If the list, or any of its IntRosters, is null.
+     */
+    public List<IntRoster> rebalanceEncoded(List<IntRoster> providedRosters) {
+        if (providedRosters == null)
+            throw new IllegalArgumentException("You are trying to rebalance a null list of IntRosters, or one with null IntRosters. Neither the list nor its IntRosters may be null");
+        
+        String[] names = new String[providedRosters.size()];
+        int[] sizes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (providedRosters.get(i) == null)
+                throw new IllegalArgumentException("You are trying to rebalance a null list of IntRosters, or one with null IntRosters. Neither the list nor its IntRosters may be null");
+            names[i] = providedRosters.get(i).getName();
+            sizes[i] = providedRosters.get(i).size();
+        }
+        return RosterLayoutPlan.plan(names, sizes, this.managedRosterSize, 
+                this.shuffleMode, rebalanceRandomSource())
+                .materializeEncoded(providedRosters);
+    }
+    
+    private RosterLayoutPlan layoutPlanFor(List<Roster> rosters) {
+        String[] names = new String[rosters.size()];
+        int[] sizes = new int[rosters.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = rosters.get(i).getName();
+            sizes[i] = rosters.get(i).size();
+        }
+        return RosterLayoutPlan.plan(names, sizes, this.managedRosterSize, 
+                this.shuffleMode, rebalanceRandomSource());
+    }
+    
+    /**
+     * Returns the list of managed rosters without blocking: the rebalance runs
+     * on a virtual thread of its own.
+     * 
+     * It works just like getManagedRostersAsync(Executor) does, and it is the
+     * way to go when rebalancing many RosterManagers at once, such as one per
+     * tenant, since virtual threads cost next to nothing.
+     * 
+     * @return A CompletableFuture of a List containing Roster objects, or an 
+     * empty list if this RosterManager does not manage any rosters.
+     */
+    public CompletableFuture<List<Roster>> getManagedRostersAsync() {
+        return getManagedRostersAsync(VIRTUAL_THREADS);
+    }
+    
+    /**
+     * Returns the list of managed rosters without blocking: the rebalance runs
+     * on the given executor.
+     * 
+     * The rebalance works on the provided rosters as they are when this method
+     * is invoked: the rosters managed, or the elements pushed or popped, 
+     * afterwards are left for the next rebalance.
+     * 
+     * Callers asking while a rebalance of the very same provided rosters is 
+     * still running share it, instead of starting one of their own. Each caller
+     * still gets rosters of its own: they share their elements with the other
+     * callers' until they are modified, and then get a copy of them.
+     * 
+     * Cancelling the returned future gives up on the result. Once every caller
+     * sharing a rebalance has cancelled, the rebalance itself stops before the 
+     * next provided roster is shuffled, or at the end of the phase it is running;
+     * if it has not started yet, it never shuffles anything.
+     * 
+     * The rebalance never is incremental, since it may run at the same time as
+     * other rebalances. It draws from a source split, on the calling thread, 
+     * from the random source getManagedRosters uses, so it never draws from the
+     * same source as another rebalance, and a seeded source still gives the 
+     * same shuffles as long as the calls are made in the same order.
+     * 
+     * @param executor where to run the rebalance; must be not null.
+     * @return A CompletableFuture of a List containing Roster objects, or an 
+     * empty list if this RosterManager does not manage any rosters.
+     * @throws IllegalArgumentException If the executor is null.
+     */
+    public CompletableFuture<List<Roster>> getManagedRostersAsync(Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("You are trying to rebalance on a null Executor. The executor must be not null");
+        
+        ProvidedState providedState = providedState();
+        List<Roster> rosters = null;
+        while (true) {
+            InFlightRebalance current = this.inFlightRebalance.get();
+            if (current != null && current.providedState.isSameAs(providedState) && current.join())
+                return current.callerFuture();
+            
+            if (rosters == null) {
+                rosters = frozenProvidedRosters();
+                ProvidedState frozenState = providedState();
+                if (!frozenState.isSameAs(providedState)) {
+                    providedState = frozenState;
+                    rosters = null;
+                    continue;
+                }
+            }
+            List<Roster> frozenRosters = rosters;
+            InFlightRebalance rebalance = new InFlightRebalance(providedState);
+            if (!this.inFlightRebalance.compareAndSet(current, rebalance))
+                continue;
+            
+            RandomSource random = asyncRandomSource();
+            CompletableFuture<List<Roster>> callerFuture = rebalance.callerFuture();
+            rebalance.result.whenComplete((managedRosters, error) -> 
+                    this.inFlightRebalance.compareAndSet(rebalance, null));
+            try {
+                executor.execute(() -> {
+                    try {
+                        rebalance.result.complete(rebalance(frozenRosters, false, random, rebalance::isCancelled));
+                    } catch (RuntimeException | Error e) {
+                        rebalance.result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rebalance.result.completeExceptionally(e);
+            }
+            return callerFuture;
+        }
+    }
+    
+    /**
+     * Returns a read only snapshot of the managed rosters.
+     * 
+     * Unlike getManagedRosters, the snapshot is not shuffled again on every call:
+     * the same snapshot is returned over and over until a roster is added to or
+     * removed from this RosterManager, an element is pushed to or popped from a 
+     * provided roster, or reshuffle is invoked. Neither the list nor the rosters 
+     * within it can be modified.
+     * 
+     * A new snapshot always shuffles every provided roster, and it never touches
+     * the shuffles kept for incremental rebalancing.
+     * 
+     * @return An unmodifiable List containing read only Roster objects or an 
+     * empty list if this RosterManager does not manage any rosters.
+     */
+    public List<Roster> getManagedRostersSnapshot() {
+        Snapshot currentSnapshot = this.snapshot;
+        ProvidedState providedState = providedState();
+        if (currentSnapshot != null && currentSnapshot.providedState.isSameAs(providedState))
+            return currentSnapshot.managedRosters;
+        
+        List<Roster> rebalancedRosters = rebalance(providedRosters(), false, rebalanceRandomSource(), NEVER_CANCELLED);
+        rebalancedRosters.forEach(Roster::makeReadOnly);
+        Snapshot newSnapshot = new Snapshot(providedState, 
+                Collections.unmodifiableList(rebalancedRosters));
+        this.snapshot = newSnapshot;
+        return newSnapshot.managedRosters;
+    }
+    
+    /**
+     * Throws away the current managed rosters snapshot, so that the next call to
+     * getManagedRostersSnapshot shuffles the provided rosters again. When 
+     * rebalancing incrementally, it also forgets every previous shuffle.
+     * 
+     * @return A reference to this RosterManager
+     */
+    public RosterManager reshuffle() {
+        this.snapshot = null;
+        if (this.incrementalRebalancing)
+            forgetLastRebalance();
+        return this;
     }
     
     /*
-    Cleans up any changes done previosly to the managed Rosters.
+    Runs every phase over the given provided Rosters and returns the resulting
+    managed Rosters. Before each phase, and before shuffling each provided 
+    Roster, it gives up with a CancellationException if the rebalance has been
+    cancelled.
     */
-    private void setUpManagedRosters() {
-        this.managedRosters = Collections.synchronizedList(new ArrayList<>());
+    private List<Roster> rebalance(List<Roster> rosters, boolean incremental, RandomSource random, 
+            BooleanSupplier cancelled) {
+        checkNotCancelled(cancelled);
+        Capacity capacity = Capacity.of(rosters, this.managedRosterSize);
+        List<Roster> managedRosters = shuffleProvidedRosters(rosters, incremental, 
+                rosters.size() + capacity.extraRosters, random, cancelled);
+        if (capacity.surplus == 0)
+            return managedRosters;
+        
+        checkNotCancelled(cancelled);
+        Leftovers leftovers = fitProvidedRostersToMaximumSize(managedRosters, capacity);
+        checkNotCancelled(cancelled);
+        if (capacity.room > 0)
+            allocateWithinManagedRosters(managedRosters, leftovers);
+        checkNotCancelled(cancelled);
+        if (thereAre(leftovers))
+            createNewManagedRostersFor(managedRosters, leftovers, capacity);
+        return managedRosters;
+    }
+    
+    private static void checkNotCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean())
+            throw new CancellationException("The rebalance was cancelled");
     }
     
     /*
     For each Roster within the managedRoster list, the shuffle method is invoked.
+    When rebalancing incrementally, a previous shuffle is reused if the provided
+    Roster has not changed since.
     */
-    private void shuffleProvidedRosters() {
-        this.providedRosters.stream().forEach(providedRoster -> {
-            Roster managedRoster = new Roster(providedRoster.getName());
-            List<String> providedElements = 
-                    providedRoster.stream().collect(Collectors.toList());
-            Collections.shuffle(providedElements);
-            providedElements.stream().forEach(element -> managedRoster.push(element));
-            this.managedRosters.add(managedRoster);
-        });
+    private List<Roster> shuffleProvidedRosters(List<Roster> rosters, boolean incremental, 
+            int managedRostersCapacity, RandomSource random, BooleanSupplier cancelled) {
+        Roster[] shuffledRosters = new Roster[rosters.size()];
+        if (incremental)
+            reusePreviousShuffles(rosters, shuffledRosters);
+        
+        ForkJoinPool pool = this.shufflePool;
+        ShuffleRuns runs = ShuffleRuns.of(rosters.stream().mapToInt(Roster::size).toArray(), random);
+        Shuffle shuffle = new Shuffle(this.shuffleMode, this.managedRosterSize, cancelled);
+        if (pool != null)
+            pool.invoke(new ShuffleTask(rosters, shuffledRosters, shuffle, runs, 0, runs.count()));
+        else if (this.virtualThreadShuffle)
+            shuffleOnVirtualThreads(rosters, shuffledRosters, shuffle, runs);
+        else
+            for (int run = 0; run < runs.count(); run++)
+                shuffleRun(rosters, shuffledRosters, shuffle, runs, run);
+        
+        List<Roster> managedRosters = new ArrayList<>(managedRostersCapacity);
+        if (incremental)
+            copiesOfLatestShuffles(rosters, shuffledRosters, managedRosters);
+        else
+            managedRosters.addAll(Arrays.asList(shuffledRosters));
+        return managedRosters;
+    }
+    
+    /*
+    Shuffles each run of provided Rosters on a virtual thread of its own.
+    */
+    private static void shuffleOnVirtualThreads(List<Roster> rosters, Roster[] shuffledRosters, 
+            Shuffle shuffle, ShuffleRuns runs) {
+        List<Future<?>> shuffledRuns = new ArrayList<>(runs.count());
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (int run = 0; run < runs.count(); run++) {
+                int eachRun = run;
+                shuffledRuns.add(executor.submit(() -> 
+                        shuffleRun(rosters, shuffledRosters, shuffle, runs, eachRun)));
+            }
+            for (Future<?> shuffledRun : shuffledRuns)
+                shuffledRun.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw (RuntimeException) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The shuffle was interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /*
+    Shuffles the provided Rosters of a run, one after the other, with the run
+    random source. Those reused from a previous shuffle are skipped.
+    */
+    private static void shuffleRun(List<Roster> rosters, Roster[] shuffledRosters, 
+            Shuffle shuffle, ShuffleRuns runs, int run) {
+        RandomSource random = runs.random(run);
+        for (int i = runs.start(run); i < runs.end(run); i++)
+            if (shuffledRosters[i] == null)
+                shuffledRosters[i] = shuffle.apply(rosters.get(i), random);
+    }
+    
+    /*
+    The source of randomness for a rebalance that runs on another thread: a 
+    split of the one for a single rebalance, taken under its lock on the 
+    calling thread, so that the rebalance never shares a source with anyone.
+    */
+    private RandomSource asyncRandomSource() {
+        RandomSource randomSource = rebalanceRandomSource();
+        synchronized (randomSource) {
+            return randomSource.split();
+        }
+    }
+    
+    /*
+    The source of randomness for a single rebalance.
+    */
+    RandomSource rebalanceRandomSource() {
+        return this.randomSource;
+    }
+    
+    private void reusePreviousShuffles(List<Roster> rosters, Roster[] shuffledRosters) {
+        for (int i = 0; i < shuffledRosters.length; i++) {
+            Roster providedRoster = rosters.get(i);
+            ShuffledRoster shuffledRoster = this.shuffledRosters.get(providedRoster.getName());
+            if (shuffledRoster != null && shuffledRoster.isUpToDateWith(providedRoster))
+                shuffledRosters[i] = shuffledRoster.shuffled;
+        }
+    }
+    
+    /*
+    Remembers the new shuffles and hands out copy on write views of them, so 
+    that the ones we keep are never modified, and only the managed Rosters the 
+    rebalance modifies copy their elements.
+    */
+    private void copiesOfLatestShuffles(List<Roster> rosters, Roster[] shuffledRosters, 
+            List<Roster> managedRosters) {
+        for (int i = 0; i < shuffledRosters.length; i++) {
+            Roster providedRoster = rosters.get(i);
+            ShuffledRoster shuffledRoster = this.shuffledRosters.get(providedRoster.getName());
+            if (shuffledRoster == null || shuffledRoster.shuffled != shuffledRosters[i])
+                this.shuffledRosters.put(providedRoster.getName(), 
+                        new ShuffledRoster(providedRoster, shuffledRosters[i]));
+            managedRosters.add(shuffledRosters[i].sharedView());
+        }
     }
 
     /*
     Adjusts the existing rosters to "fit" with the max. number of elements constrain.
     */
-    private Queue<String> fitProvidedRostersToMaximumSize() {
-        Queue<String> leftovers = new LinkedList<>();
-        this.managedRosters.stream().forEach(managedRoster -> {
-            while (thereAreLeftoversOn(managedRoster)) 
-                    leftovers.offer(managedRoster.pop());
+    private Leftovers fitProvidedRostersToMaximumSize(List<Roster> managedRosters, Capacity capacity) {
+        Leftovers leftovers = new Leftovers(capacity.surplus);
+        managedRosters.stream().forEach(managedRoster -> {
+            if (thereAreLeftoversOn(managedRoster)) 
+                leftovers.takeFrom(managedRoster, managedRoster.size() - this.managedRosterSize);
         });
         return leftovers;
     }
@@ -166,11 +862,10 @@ public class RosterManager {
     /*
     Allocates leftovers on the empty sits among the existing managed Rosters.
     */
-    private void allocateWithinManagedRosters(Queue<String> leftovers) {
-        this.managedRosters.stream().forEach(managedRoster -> {
-            if (!managedRoster.isEmpty()) 
-                while (thereAre(leftovers) && thereIsRoomOn(managedRoster)) 
-                    managedRoster.push(leftovers.poll());
+    private void allocateWithinManagedRosters(List<Roster> managedRosters, Leftovers leftovers) {
+        managedRosters.stream().forEach(managedRoster -> {
+            if (!managedRoster.isEmpty() && thereAre(leftovers) && thereIsRoomOn(managedRoster)) 
+                leftovers.moveTo(managedRoster, roomOn(managedRoster));
         });
     }
     
@@ -178,21 +873,98 @@ public class RosterManager {
     Creates new managed Rosters for all those elements that didn't fit on the
     managed Rosters existing so far.
     */
-    private void createNewManagedRostersFor(Queue<String> leftovers) {
-        List<Roster> extraManagedRosters = new ArrayList<>();
+    private void createNewManagedRostersFor(List<Roster> managedRosters, Leftovers leftovers, 
+            Capacity capacity) {
+        List<Roster> extraManagedRosters = new ArrayList<>(capacity.extraRosters);
         int counter = 0;
         while (thereAre(leftovers)) {
             Roster managedRoster = 
-                    new Roster(EXTRA_MANAGED_ROSTER_NAME_PREFIX + ++counter);
-            while (thereAre(leftovers) && thereIsRoomOn(managedRoster)) 
-                managedRoster.push(leftovers.poll());
+                    new Roster(EXTRA_MANAGED_ROSTER_NAME_PREFIX + ++counter)
+                            .ensureCapacity(Math.min(leftovers.size(), this.managedRosterSize));
+            leftovers.moveTo(managedRoster, roomOn(managedRoster));
             
             extraManagedRosters.add(managedRoster);
         }
-        this.managedRosters.addAll(extraManagedRosters);
+        managedRosters.addAll(extraManagedRosters);
     }
     
-    private boolean thereAre(Queue<String> leftovers) {
+    /*
+    Tells whether the managed Rosters from the last rebalance are still valid, 
+    that is, the same provided Rosters are managed, none of them has changed, and 
+    nobody has changed the managed Rosters we handed out.
+    */
+    private boolean nothingChangedSinceLastRebalance(List<Roster> rosters) {
+        if (this.lastManagedRosterModifications == null 
+                || rosters.size() != this.lastProvidedRosters.size())
+            return false;
+        
+        for (int i = 0; i < rosters.size(); i++) {
+            Roster providedRoster = rosters.get(i);
+            if (providedRoster != this.lastProvidedRosters.get(i) 
+                    || !this.shuffledRosters.get(providedRoster.getName()).isUpToDateWith(providedRoster))
+                return false;
+        }
+        for (int i = 0; i < this.managedRosters.size(); i++)
+            if (this.managedRosters.get(i).modifications() != this.lastManagedRosterModifications[i])
+                return false;
+        return true;
+    }
+    
+    private void rememberLastRebalance(List<Roster> rosters, List<Roster> rebalancedRosters) {
+        this.managedRosters = rebalancedRosters;
+        this.lastProvidedRosters = rosters;
+        this.lastManagedRosterModifications = this.managedRosters.stream()
+                .mapToInt(Roster::modifications)
+                .toArray();
+        if (this.shuffledRosters.size() > rosters.size())
+            this.shuffledRosters.keySet().retainAll(
+                    rosters.stream().map(Roster::getName).collect(Collectors.toSet()));
+    }
+    
+    private void forgetLastRebalance() {
+        this.shuffledRosters.clear();
+        this.lastProvidedRosters = Collections.emptyList();
+        this.lastManagedRosterModifications = null;
+    }
+    
+    /*
+    Takes a copy of the provided Rosters, so that they can be walked 
+    while other threads add or remove Rosters.
+    */
+    private List<Roster> providedRosters() {
+        return this.providedRosters.rosters();
+    }
+    
+    /*
+    Takes views of the provided Rosters as they are right now, so that a 
+    rebalance running later on, on another thread, sees them just like this. 
+    The views share the provided Roster elements, or the source a provided 
+    Roster view reads them from, which get copied only if a provided Roster 
+    is modified before the views are gone.
+    */
+    private List<Roster> frozenProvidedRosters() {
+        List<Roster> rosters = providedRosters();
+        List<Roster> frozenRosters = new ArrayList<>(rosters.size());
+        for (Roster roster : rosters)
+            frozenRosters.add(roster.sharedView());
+        return frozenRosters;
+    }
+    
+    /*
+    Sums up how many times the pool and each provided Roster have changed. 
+    Those counters only grow, so any change yields a different state.
+    The pool counter is read first: should the pool change while we walk it, 
+    the state will look older than it is, and we will just rebuild once more.
+    */
+    private ProvidedState providedState() {
+        long rosterModifications = this.providedRosters.modifications();
+        long[] elementModifications = {0};
+        this.providedRosters.forEachRoster(providedRoster -> 
+                elementModifications[0] += providedRoster.modifications());
+        return new ProvidedState(rosterModifications, elementModifications[0]);
+    }
+    
+    private boolean thereAre(Leftovers leftovers) {
         return !leftovers.isEmpty();
     }
     
@@ -200,8 +972,225 @@ public class RosterManager {
         return roster.size() < this.managedRosterSize;
     }
     
+    private int roomOn(Roster roster) {
+        return this.managedRosterSize - roster.size();
+    }
+    
     private boolean thereAreLeftoversOn(Roster roster) {
         return roster.size() > this.managedRosterSize;
     }
     
+    /*
+    A shuffled copy of a provided Roster, along with the provided Roster 
+    modification count at the time it was shuffled.
+    */
+    private static final class ShuffledRoster {
+        
+        private final Roster provided;
+        private final int providedModifications;
+        private final Roster shuffled;
+
+        private ShuffledRoster(Roster provided, Roster shuffled) {
+            this.provided = provided;
+            this.providedModifications = provided.modifications();
+            this.shuffled = shuffled;
+        }
+        
+        private boolean isUpToDateWith(Roster providedRoster) {
+            return this.provided == providedRoster 
+                    && this.providedModifications == providedRoster.modifications();
+        }
+        
+    }
+    
+    /*
+    How many times the pool of provided Rosters and their elements had changed
+    at a given point.
+    */
+    private static final class ProvidedState {
+        
+        private final long rosterModifications;
+        private final long elementModifications;
+
+        private ProvidedState(long rosterModifications, long elementModifications) {
+            this.rosterModifications = rosterModifications;
+            this.elementModifications = elementModifications;
+        }
+        
+        private boolean isSameAs(ProvidedState other) {
+            return this.rosterModifications == other.rosterModifications
+                    && this.elementModifications == other.elementModifications;
+        }
+        
+    }
+    
+    /*
+    The read only managed Rosters built for a given provided state.
+    */
+    private static final class Snapshot {
+        
+        private final ProvidedState providedState;
+        private final List<Roster> managedRosters;
+
+        private Snapshot(ProvidedState providedState, List<Roster> managedRosters) {
+            this.providedState = providedState;
+            this.managedRosters = managedRosters;
+        }
+        
+    }
+    
+    /*
+    Shuffles a range of runs of provided Rosters, splitting it in halves until
+    a single run is left. Each run draws from its own random source, so the 
+    shuffles do not depend on which thread makes them, nor when.
+    It is never serialized, even though every ForkJoinTask is Serializable.
+    */
+    @SuppressWarnings("serial")
+    private static final class ShuffleTask extends RecursiveAction {
+        
+        private final List<Roster> rosters;
+        private final Roster[] shuffledRosters;
+        private final Shuffle shuffle;
+        private final ShuffleRuns runs;
+        private final int fromRun;
+        private final int toRun;
+
+        private ShuffleTask(List<Roster> rosters, Roster[] shuffledRosters, Shuffle shuffle,
+                ShuffleRuns runs, int fromRun, int toRun) {
+            this.rosters = rosters;
+            this.shuffledRosters = shuffledRosters;
+            this.shuffle = shuffle;
+            this.runs = runs;
+            this.fromRun = fromRun;
+            this.toRun = toRun;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRun - fromRun <= 1) {
+                for (int run = fromRun; run < toRun; run++)
+                    shuffleRun(rosters, shuffledRosters, shuffle, runs, run);
+                return;
+            }
+            int middle = (fromRun + toRun) >>> 1;
+            invokeAll(new ShuffleTask(rosters, shuffledRosters, shuffle, runs, fromRun, middle),
+                    new ShuffleTask(rosters, shuffledRosters, shuffle, runs, middle, toRun));
+        }
+        
+    }
+    
+    /*
+    A rebalance running for getManagedRostersAsync, along with the provided 
+    state it started from and how many callers are still waiting for it. 
+    Once the number of callers drops to zero, it is cancelled and nobody can 
+    join it anymore.
+    */
+    private static final class InFlightRebalance {
+        
+        private final ProvidedState providedState;
+        private final CompletableFuture<List<Roster>> result = new CompletableFuture<>();
+        private final AtomicInteger callers = new AtomicInteger(1);
+        private volatile boolean cancelled;
+
+        private InFlightRebalance(ProvidedState providedState) {
+            this.providedState = providedState;
+        }
+        
+        private boolean join() {
+            return this.callers.getAndUpdate(count -> count == 0 ? 0 : count + 1) != 0;
+        }
+        
+        private boolean isCancelled() {
+            return this.cancelled;
+        }
+        
+        /*
+        A future of a caller that has already joined, the one that started the 
+        rebalance included. It gets Rosters of its own, which read their 
+        elements from the result, which nobody ever modifies.
+        */
+        private CompletableFuture<List<Roster>> callerFuture() {
+            CompletableFuture<List<Roster>> callerFuture = new CompletableFuture<List<Roster>>() {
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    boolean cancelled = super.cancel(mayInterruptIfRunning);
+                    if (cancelled && InFlightRebalance.this.callers.decrementAndGet() == 0)
+                        InFlightRebalance.this.cancelled = true;
+                    return cancelled;
+                }
+            };
+            this.result.whenComplete((managedRosters, error) -> {
+                if (error != null)
+                    callerFuture.completeExceptionally(error);
+                else
+                    callerFuture.complete(Collections.unmodifiableList(managedRosters.stream()
+                            .map(managedRoster -> Roster.view(managedRoster.getName(), 
+                                    managedRoster::elementAt, managedRoster.size()))
+                            .collect(Collectors.toList())));
+            });
+            return callerFuture;
+        }
+        
+    }
+    
+    /*
+    A ShuffleMode along with the maximum size it shuffles for, and the check 
+    telling whether the rebalance it shuffles for has been cancelled.
+    */
+    private static final class Shuffle {
+        
+        private final ShuffleMode mode;
+        private final int managedRosterSize;
+        private final BooleanSupplier cancelled;
+
+        private Shuffle(ShuffleMode mode, int managedRosterSize, BooleanSupplier cancelled) {
+            this.mode = mode;
+            this.managedRosterSize = managedRosterSize;
+            this.cancelled = cancelled;
+        }
+        
+        private Roster apply(Roster providedRoster, RandomSource random) {
+            checkNotCancelled(this.cancelled);
+            return this.mode.shuffle(providedRoster, random, this.managedRosterSize);
+        }
+        
+    }
+    
+    /*
+    What a rebalance is going to need, worked out from the provided Roster 
+    sizes alone before anything is copied: how many surplus elements there are, 
+    how much room there is for them within the non empty Rosters, and how many 
+    new Rosters will take the rest. It lets a rebalance skip the phases it does 
+    not need, and size every collection up front.
+    */
+    private static final class Capacity {
+        
+        private final int surplus;
+        private final int room;
+        private final int extraRosters;
+
+        private Capacity(int surplus, int room, int extraRosters) {
+            this.surplus = surplus;
+            this.room = room;
+            this.extraRosters = extraRosters;
+        }
+        
+        private static Capacity of(List<Roster> rosters, int managedRosterSize) {
+            long surplus = 0;
+            long room = 0;
+            for (Roster roster : rosters) {
+                int size = roster.size();
+                if (size > managedRosterSize)
+                    surplus += size - managedRosterSize;
+                else if (size > 0)
+                    room += managedRosterSize - size;
+            }
+            long homeless = Math.max(0, surplus - room);
+            long extraRosters = (homeless + managedRosterSize - 1) / managedRosterSize;
+            return new Capacity(Math.toIntExact(surplus), (int) Math.min(room, Integer.MAX_VALUE), 
+                    Math.toIntExact(extraRosters));
+        }
+        
+    }
+    
 }
@@ -0,0 +1,76 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+The pool of provided Rosters of a RosterManager, indexed by Roster name and 
+kept in the order they were added.
+
+Every implementation must be safe to use from several threads at once.
+*/
+interface RosterRegistry {
+    
+    /*
+    Adds the given Roster, unless there is already one with the same name.
+    Returns true if the Roster was added, false otherwise.
+    */
+    boolean add(Roster roster);
+    
+    /*
+    Adds all the given Rosters, in order, unless any of them has the same name
+    as one already there, in which case none of them is added. The given Rosters
+    must all have different names. Returns true if the Rosters were added, 
+    false otherwise.
+    */
+    boolean addAll(List<Roster> rosters);
+    
+    /*
+    Removes the Roster with the given name. Returns true if there was one.
+    */
+    boolean remove(String rosterName);
+    
+    boolean contains(String rosterName);
+    
+    /*
+    Returns a copy of the provided Rosters, in the order they were added.
+    */
+    List<Roster> rosters();
+    
+    /*
+    Walks the provided Rosters, in the order they were added, without copying them.
+    */
+    void forEachRoster(Consumer<Roster> action);
+    
+    /*
+    Counts how many times a Roster has been added or removed. It only grows.
+    */
+    long modifications();
+    
+}
@@ -0,0 +1,267 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A RosterTable holds many Rosters in a handful of flat arrays, instead of 
+ * one object per Roster: an array of names, an array of offsets and a single
+ * array with the elements of every Roster, one Roster after the other.
+ * 
+ * It is meant for millions of small Rosters, where the overhead of a Roster 
+ * object per Roster would take most of the heap. Rosters are appended to the 
+ * table and never change afterwards. A RosterManager can rebalance a whole 
+ * table straight away, into a new table, without creating a Roster object at all.
+ * 
+ * Unlike a RosterManager, a RosterTable does not check that Roster names are
+ * unique: that would take an index entry per Roster.
+ * 
+ * @author Norville Rogers
+ */
+public final class RosterTable {
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    private String[] names;
+    private int[] offsets;
+    private String[] elements;
+    private int rosterCount;
+
+    /**
+     * Creates a new, empty, RosterTable instance.
+     */
+    public RosterTable() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates a new, empty, RosterTable instance with room for the given 
+     * number of Rosters and elements.
+     * 
+     * @param rosterCapacity how many Rosters the table will hold; must be zero or greater.
+     * @param elementCapacity how many elements, all Rosters together, the table
+     * will hold; must be zero or greater.
+     * @throws IllegalArgumentException If any of the capacities is negative.
+     */
+    public RosterTable(int rosterCapacity, int elementCapacity) {
+        if (rosterCapacity < 0 || elementCapacity < 0)
+            throw new IllegalArgumentException("You are trying to create a RosterTable with room for " + rosterCapacity + " Rosters and " + elementCapacity + " elements. Both must be zero or greater");
+        
+        this.names = new String[rosterCapacity];
+        this.offsets = new int[rosterCapacity + 1];
+        this.elements = new String[elementCapacity];
+    }
+    
+    /**
+     * Creates a new RosterTable holding the given Rosters, in order.
+     * 
+     * @param rosters the Rosters to copy into the table; must be not null.
+     * @return A new RosterTable.
+     * @throws IllegalArgumentException If the provided collection is null.
+     */
+    public static RosterTable of(Collection<Roster> rosters) {
+        if (rosters == null)
+            throw new IllegalArgumentException("You are trying to create a RosterTable out of a null collection. The collection must be not null");
+        
+        int elementCount = rosters.stream().mapToInt(Roster::size).sum();
+        RosterTable table = new RosterTable(rosters.size(), elementCount);
+        for (Roster roster : rosters) {
+            table.startRoster(roster.getName(), roster.size());
+            for (int i = 0; i < roster.size(); i++)
+                table.elements[table.offsets[table.rosterCount - 1] + i] = roster.elementAt(i);
+            table.offsets[table.rosterCount] += roster.size();
+        }
+        return table;
+    }
+    
+    /**
+     * Appends a Roster to this table.
+     * 
+     * @param rosterName the Roster name; must be neither null nor empty.
+     * @param rosterElements the Roster elements, the first one being the bottom 
+     * of the Roster; no element may be null or empty.
+     * @return This RosterTable
+     * @throws IllegalArgumentException If the name, or any of the elements, 
+     * is null or empty. In that case, nothing is appended.
+     */
+    public RosterTable addRoster(String rosterName, String... rosterElements) {
+        if (rosterName == null || rosterName.isEmpty())
+            throw new IllegalArgumentException("You are trying to add a Roster with a null or empty name. The roster name must be neither null nor empty");
+        if (rosterElements == null)
+            throw new IllegalArgumentException("You are trying to add a Roster with a null array of elements. The array must be not null");
+        for (String element : rosterElements)
+            if (element == null || element.isEmpty())
+                throw new IllegalArgumentException("You are trying to add a null or empty element to the Roster " + rosterName + ". Every element must be neither null nor empty");
+        
+        startRoster(rosterName, rosterElements.length);
+        System.arraycopy(rosterElements, 0, this.elements, this.offsets[this.rosterCount - 1], 
+                rosterElements.length);
+        this.offsets[this.rosterCount] += rosterElements.length;
+        return this;
+    }
+    
+    /**
+     * The number of Rosters in this table.
+     * 
+     * @return An int with the number of Rosters.
+     */
+    public int rosterCount() {
+        return this.rosterCount;
+    }
+    
+    /**
+     * The number of elements in this table, all Rosters together.
+     * 
+     * @return An int with the number of elements.
+     */
+    public int elementCount() {
+        return this.offsets[this.rosterCount];
+    }
+    
+    /**
+     * The name of a Roster.
+     * 
+     * @param roster the Roster number, zero being the first one appended.
+     * @return The Roster name.
+     * @throws IndexOutOfBoundsException If there is no such Roster.
+     */
+    public String name(int roster) {
+        checkRoster(roster);
+        return this.names[roster];
+    }
+    
+    /**
+     * The size of a Roster.
+     * 
+     * @param roster the Roster number, zero being the first one appended.
+     * @return An int with the Roster size.
+     * @throws IndexOutOfBoundsException If there is no such Roster.
+     */
+    public int size(int roster) {
+        checkRoster(roster);
+        return this.offsets[roster + 1] - this.offsets[roster];
+    }
+    
+    /**
+     * An element of a Roster.
+     * 
+     * @param roster the Roster number, zero being the first one appended.
+     * @param index the element index, zero being the bottom of the Roster.
+     * @return The element.
+     * @throws IndexOutOfBoundsException If there is no such Roster or element.
+     */
+    public String element(int roster, int index) {
+        if (index < 0 || index >= size(roster))
+            throw new IndexOutOfBoundsException("Element " + index + " is out of a Roster with " + size(roster) + " elements");
+        
+        return this.elements[this.offsets[roster] + index];
+    }
+    
+    /**
+     * Returns a Roster with the name and elements of a Roster in this table.
+     * 
+     * The Roster reads its elements straight from the table, and it only gets a
+     * copy of them the first time it is modified, which leaves the table untouched.
+     * 
+     * @param roster the Roster number, zero being the first one appended.
+     * @return A new Roster.
+     * @throws IndexOutOfBoundsException If there is no such Roster.
+     */
+    public Roster roster(int roster) {
+        checkRoster(roster);
+        int offset = this.offsets[roster];
+        String[] tableElements = this.elements;
+        return Roster.view(name(roster), index -> tableElements[offset + index], size(roster));
+    }
+
+    @Override
+    public String toString() {
+        return "{rosters:" + this.rosterCount + ", elements:" + elementCount() + "}";
+    }
+    
+    /*
+    Appends a Roster with the given name and room for the given number of 
+    elements, and leaves its size at zero.
+    */
+    private void startRoster(String rosterName, int size) {
+        if (this.rosterCount == this.names.length) {
+            int newCapacity = Math.max(DEFAULT_CAPACITY, this.rosterCount + (this.rosterCount >> 1));
+            this.names = Arrays.copyOf(this.names, newCapacity);
+            this.offsets = Arrays.copyOf(this.offsets, newCapacity + 1);
+        }
+        int offset = this.offsets[this.rosterCount];
+        int needed = Math.addExact(offset, size);
+        if (needed > this.elements.length)
+            this.elements = Arrays.copyOf(this.elements, 
+                    Math.max(needed, this.elements.length + (this.elements.length >> 1)));
+        this.names[this.rosterCount] = rosterName;
+        this.rosterCount++;
+        this.offsets[this.rosterCount] = offset;
+    }
+    
+    private void checkRoster(int roster) {
+        if (roster < 0 || roster >= this.rosterCount)
+            throw new IndexOutOfBoundsException("Roster " + roster + " is out of a table with " + this.rosterCount + " Rosters");
+    }
+    
+    /*
+    Creates a table out of ready made columns, taking ownership of them.
+    */
+    static RosterTable wrap(String[] names, int[] offsets, String[] elements) {
+        RosterTable table = new RosterTable(0, 0);
+        table.names = names;
+        table.offsets = offsets;
+        table.elements = elements;
+        table.rosterCount = names.length;
+        return table;
+    }
+    
+    String[] names() {
+        return Arrays.copyOf(this.names, this.rosterCount);
+    }
+    
+    int[] sizes() {
+        int[] sizes = new int[this.rosterCount];
+        for (int i = 0; i < this.rosterCount; i++)
+            sizes[i] = this.offsets[i + 1] - this.offsets[i];
+        return sizes;
+    }
+    
+    /*
+    Where the elements of a Roster start within the elements array.
+    */
+    int offset(int roster) {
+        return this.offsets[roster];
+    }
+    
+    String[] elements() {
+        return this.elements;
+    }
+    
+}
@@ -0,0 +1,100 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+/**
+ * How a RosterManager shuffles the provided Rosters before rearranging them.
+ * 
+ * @author Norville Rogers
+ */
+public enum ShuffleMode {
+    
+    /**
+     * Every provided Roster is fully shuffled, so every managed Roster holds
+     * its elements in random order. This is the default.
+     */
+    FULL {
+        @Override
+        Roster shuffle(Roster providedRoster, RandomSource random, int managedRosterSize) {
+            return providedRoster.shuffledCopy(random);
+        }
+        
+        @Override
+        void permute(int[] permutation, int offset, int size, RandomSource random, int managedRosterSize) {
+            // The same "inside-out" Fisher-Yates as Roster.shuffledCopy, over indexes
+            for (int i = 0; i < size; i++) {
+                int j = random.nextInt(i + 1);
+                permutation[offset + i] = permutation[offset + j];
+                permutation[offset + j] = i;
+            }
+        }
+    },
+    
+    /**
+     * Only the surplus elements are chosen at random: for a provided Roster with
+     * k elements over the maximum size, only k random draws are made, no matter
+     * how big the Roster is. The elements moved to other Rosters are still a 
+     * random choice, but the order of the elements is not: each draw swaps the
+     * element it chooses with the one in its place, so the elements kept may 
+     * end up moved around by those swaps, yet they are not shuffled. Use it when
+     * you do not care about that order, or call Roster.shuffle on the managed 
+     * Rosters whose order you do care about.
+     */
+    SURPLUS_ONLY {
+        @Override
+        Roster shuffle(Roster providedRoster, RandomSource random, int managedRosterSize) {
+            return providedRoster.surplusShuffledCopy(random, 
+                    Math.max(0, providedRoster.size() - managedRosterSize));
+        }
+        
+        @Override
+        void permute(int[] permutation, int offset, int size, RandomSource random, int managedRosterSize) {
+            // The same partial Fisher-Yates as Roster.surplusShuffledCopy, over indexes
+            for (int i = 0; i < size; i++)
+                permutation[offset + i] = i;
+            for (int i = size - 1; i >= managedRosterSize && i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int index = permutation[offset + i];
+                permutation[offset + i] = permutation[offset + j];
+                permutation[offset + j] = index;
+            }
+        }
+    };
+    
+    /*
+    Creates the managed Roster for the given provided Roster.
+    */
+    abstract Roster shuffle(Roster providedRoster, RandomSource random, int managedRosterSize);
+    
+    /*
+    Writes the shuffled order of a Roster with the given size, as indexes into 
+    the Roster, at the given offset of the permutation. It draws exactly the 
+    same random ints shuffle does, so both give the same order.
+    */
+    abstract void permute(int[] permutation, int offset, int size, RandomSource random, int managedRosterSize);
+    
+}
@@ -0,0 +1,101 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+
+/*
+The provided Rosters of a rebalance, cut into runs of about ELEMENTS_PER_RUN 
+elements, a big Roster making a run of its own, each run with its own random 
+source.
+
+The first run draws from the rebalance source itself, and every other run from
+a source split from it, in order, before anything is drawn. The runs depend on
+the Roster sizes alone, and every way of shuffling walks the very same runs with
+the very same sources: one after the other, on a ForkJoinPool, on virtual 
+threads, or while laying out a plan. So a seeded source yields the same shuffles 
+whichever way they are made, and a single run yields the same draws as if there
+were no runs at all.
+*/
+final class ShuffleRuns {
+    
+    static final long ELEMENTS_PER_RUN = 10_000;
+    
+    private final int[] starts;
+    private final RandomSource[] randoms;
+
+    private ShuffleRuns(int[] starts, RandomSource[] randoms) {
+        this.starts = starts;
+        this.randoms = randoms;
+    }
+    
+    /*
+    Cuts Rosters with the given sizes into runs, splitting the given source 
+    once per run but the first.
+    */
+    static ShuffleRuns of(int[] sizes, RandomSource random) {
+        int[] starts = new int[sizes.length + 1];
+        int count = 0;
+        int roster = 0;
+        while (roster < sizes.length) {
+            starts[count++] = roster;
+            long elements = 0;
+            do {
+                elements += sizes[roster++];
+            } while (roster < sizes.length && elements + sizes[roster] <= ELEMENTS_PER_RUN);
+        }
+        starts[count] = sizes.length;
+        
+        RandomSource[] randoms = new RandomSource[count];
+        for (int run = 0; run < count; run++)
+            randoms[run] = run == 0 ? random : random.split();
+        return new ShuffleRuns(Arrays.copyOf(starts, count + 1), randoms);
+    }
+    
+    int count() {
+        return this.randoms.length;
+    }
+    
+    /*
+    The first Roster of the given run.
+    */
+    int start(int run) {
+        return this.starts[run];
+    }
+    
+    /*
+    The Roster right after the last one of the given run.
+    */
+    int end(int run) {
+        return this.starts[run + 1];
+    }
+    
+    RandomSource random(int run) {
+        return this.randoms[run];
+    }
+    
+}
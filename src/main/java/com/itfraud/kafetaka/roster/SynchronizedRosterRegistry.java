@@ -0,0 +1,101 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+A RosterRegistry backed by a LinkedHashMap, guarded by the registry own lock.
+*/
+final class SynchronizedRosterRegistry implements RosterRegistry {
+    
+    private Map<String, Roster> rosters = new LinkedHashMap<>();
+    private long modifications;
+
+    @Override
+    public synchronized boolean add(Roster roster) {
+        if (this.rosters.putIfAbsent(roster.getName(), roster) != null)
+            return false;
+        
+        this.modifications++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addAll(List<Roster> newRosters) {
+        for (Roster roster : newRosters)
+            if (this.rosters.containsKey(roster.getName()))
+                return false;
+        
+        // A batch bigger than the registry itself would make the map resize 
+        // over and over, so grow it once, to its final size, instead
+        if (newRosters.size() > this.rosters.size()) {
+            int finalSize = this.rosters.size() + newRosters.size();
+            Map<String, Roster> grown = new LinkedHashMap<>((int) Math.min(Integer.MAX_VALUE, finalSize * 4L / 3 + 1));
+            grown.putAll(this.rosters);
+            this.rosters = grown;
+        }
+        for (Roster roster : newRosters)
+            this.rosters.put(roster.getName(), roster);
+        this.modifications += newRosters.size();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(String rosterName) {
+        if (this.rosters.remove(rosterName) == null)
+            return false;
+        
+        this.modifications++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(String rosterName) {
+        return this.rosters.containsKey(rosterName);
+    }
+
+    @Override
+    public synchronized List<Roster> rosters() {
+        return new ArrayList<>(this.rosters.values());
+    }
+
+    @Override
+    public synchronized void forEachRoster(Consumer<Roster> action) {
+        this.rosters.values().forEach(action);
+    }
+
+    @Override
+    public synchronized long modifications() {
+        return this.modifications;
+    }
+    
+}
@@ -0,0 +1,134 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * This class shows how a ConcurrentRosterManager is supposed to work when 
+ * several threads use it at once.
+ * 
+ * @author Norville Rogers
+ */
+public class ConcurrentRosterManagerTest {
+    
+    private static final int THREADS = 8;
+    private static final int ROSTERS_PER_THREAD = 500;
+    
+    private final ConcurrentRosterManager rosterManager = new ConcurrentRosterManager(2);
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Several threads register their own Rosters at once, and every single 
+     * one of them ends up managed.
+     */
+    @Test
+    public void manageFromSeveralThreads() throws Exception {
+        List<Future<?>> registrations = IntStream.range(0, THREADS)
+                .mapToObj(thread -> executor.submit(() -> 
+                        IntStream.range(0, ROSTERS_PER_THREAD).forEach(i -> 
+                                rosterManager.manage(new Roster(thread + "-" + i).push("element")))))
+                .collect(Collectors.toList());
+        for (Future<?> registration : registrations)
+            registration.get();
+        
+        assertThat("Every Roster has been managed", 
+                rosterManager.getManagedRosters(), hasSize(THREADS * ROSTERS_PER_THREAD));
+        assertThat("Any of them can be found by name", 
+                rosterManager.isManaged("3-250"), is(true));
+    }
+    
+    /**
+     * Several threads ask for the managed Rosters at once, and each one gets a 
+     * complete layout of its own.
+     */
+    @Test
+    public void getManagedRostersFromSeveralThreads() throws Exception {
+        rosterManager.useRandomSource(RandomSource.splittable());
+        IntStream.range(0, 100).forEach(i -> 
+                rosterManager.manage(new Roster("roster " + i).push("one").push("two").push("three")));
+        
+        List<Future<List<Roster>>> rebalances = IntStream.range(0, THREADS * 4)
+                .mapToObj(i -> executor.submit(rosterManager::getManagedRosters))
+                .collect(Collectors.toList());
+        for (Future<List<Roster>> rebalance : rebalances) {
+            List<Roster> managedRosters = rebalance.get();
+            assertThat("Each layout holds every element", 
+                    managedRosters.stream().mapToInt(Roster::size).sum(), is(300));
+            assertThat("Each layout has the 100 provided Rosters plus 50 new ones", 
+                    managedRosters, hasSize(150));
+        }
+    }
+    
+    /**
+     * A ConcurrentRosterManager does not rebalance incrementally.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void noIncrementalRebalancing() {
+        rosterManager.useIncrementalRebalancing(true);
+    }
+    
+    /**
+     * Several threads register batches of Rosters at once, and a batch 
+     * clashing with Rosters already managed leaves no trace.
+     */
+    @Test
+    public void manageAllFromSeveralThreads() throws Exception {
+        List<Future<?>> registrations = IntStream.range(0, THREADS)
+                .mapToObj(thread -> executor.submit(() -> rosterManager.manageAll(
+                        IntStream.range(0, ROSTERS_PER_THREAD)
+                                .mapToObj(i -> new Roster(thread + "-" + i)))))
+                .collect(Collectors.toList());
+        for (Future<?> registration : registrations)
+            registration.get();
+        try {
+            rosterManager.manageAll(Arrays.asList(new Roster("new one"), new Roster("0-0")));
+        } catch (IllegalArgumentException expected) {
+            // The second Roster was already managed
+        }
+        
+        assertThat("Every batch is managed", 
+                rosterManager.getManagedRosters(), hasSize(THREADS * ROSTERS_PER_THREAD));
+        assertThat("The clashing batch is not", rosterManager.isManaged("new one"), is(false));
+    }
+    
+}
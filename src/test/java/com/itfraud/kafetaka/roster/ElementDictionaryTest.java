@@ -0,0 +1,80 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * This class shows how an ElementDictionary is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class ElementDictionaryTest {
+    
+    private final ElementDictionary dictionary = new ElementDictionary();
+    
+    /**
+     * Every new element gets the next id, and keeps it.
+     */
+    @Test
+    public void elementsGetDenseIds() {
+        assertThat("The first element gets 0", dictionary.encode("one"), is(0));
+        assertThat("The next new element gets 1", dictionary.encode("two"), is(1));
+        assertThat("A known element keeps its id", dictionary.encode("one"), is(0));
+        assertThat("There are two elements", dictionary.size(), is(2));
+    }
+    
+    /**
+     * An id decodes back into its element.
+     */
+    @Test
+    public void idsDecodeIntoElements() {
+        int id = dictionary.encode("one");
+        
+        assertThat("The id decodes into the element", dictionary.decode(id), is("one"));
+    }
+    
+    /**
+     * Ids which were never handed out cannot be decoded.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownIdsAreRejected() {
+        dictionary.encode("one");
+        dictionary.decode(1);
+    }
+    
+    /**
+     * Empty elements cannot be encoded, just as they cannot be pushed to a Roster.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyElementsAreRejected() {
+        dictionary.encode("");
+    }
+    
+}
@@ -0,0 +1,139 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * This class shows how an IntRoster is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class IntRosterTest {
+    
+    private final ElementDictionary dictionary = new ElementDictionary();
+    
+    /**
+     * An IntRoster is a last in, first out stack of ids.
+     */
+    @Test
+    public void intRosterIsAStack() {
+        IntRoster roster = new IntRoster("roster").push(3).push(7);
+        
+        assertThat("It holds two ids", roster.size(), is(2));
+        assertThat("The last id pushed comes out first", roster.pop(), is(7));
+        assertThat("Then the first one", roster.pop(), is(3));
+        assertThat("And it is empty", roster.isEmpty(), is(true));
+    }
+    
+    /**
+     * Popping an empty IntRoster fails just like popping an empty Roster.
+     */
+    @Test(expected = EmptyStackException.class)
+    public void popEmptyIntRoster() {
+        new IntRoster("roster").pop();
+    }
+    
+    /**
+     * A Roster encoded and then decoded comes back unchanged.
+     */
+    @Test
+    public void encodeAndDecode() {
+        Roster roster = new Roster("roster").pushAll("one", "two", "one");
+        
+        IntRoster encoded = IntRoster.encode(roster, dictionary);
+        Roster decoded = encoded.decode(dictionary);
+        
+        assertThat("Repeated elements share an id", 
+                encoded.stream().boxed().collect(Collectors.toList()), contains(0, 1, 0));
+        assertThat("It keeps its name", decoded.getName(), is("roster"));
+        assertThat("It keeps its elements, in order", 
+                decoded.stream().collect(Collectors.toList()), contains("one", "two", "one"));
+    }
+    
+    /**
+     * A RosterManager rebalances IntRosters just like it rebalances Rosters.
+     */
+    @Test
+    public void rebalanceEncoded() {
+        List<Roster> rosters = Arrays.asList(
+                new Roster("first").pushAll("a", "b", "c", "d", "e"),
+                new Roster("second").pushAll("f"),
+                new Roster("third").pushAll("g", "h", "a"));
+        List<IntRoster> encoded = rosters.stream()
+                .map(roster -> IntRoster.encode(roster, dictionary))
+                .collect(Collectors.toList());
+        
+        List<IntRoster> managedEncoded = new RosterManager(2)
+                .useRandomSource(RandomSource.splittable(42))
+                .rebalanceEncoded(encoded);
+        RosterManager rosterManager = new RosterManager(2)
+                .useRandomSource(RandomSource.splittable(42));
+        rosters.forEach(rosterManager::manage);
+        List<Roster> managedRosters = rosterManager.getManagedRosters();
+        
+        assertThat("The same number of managed Rosters", 
+                managedEncoded.size(), is(managedRosters.size()));
+        IntStream.range(0, managedRosters.size()).forEach(i -> {
+            Roster decoded = managedEncoded.get(i).decode(dictionary);
+            assertThat("The same names", decoded.getName(), is(managedRosters.get(i).getName()));
+            assertThat("The same elements", 
+                    decoded.stream().collect(Collectors.toList()), 
+                    is(managedRosters.get(i).stream().collect(Collectors.toList())));
+        });
+    }
+    
+    /**
+     * Immutable lists, which throw when asked whether they hold null, are 
+     * rebalanced just like any other list.
+     */
+    @Test
+    public void rebalanceEncodedImmutableList() {
+        List<IntRoster> managedEncoded = new RosterManager(2).rebalanceEncoded(List.of(
+                IntRoster.encode(new Roster("first").pushAll("a", "b", "c"), dictionary)));
+        
+        assertThat("Every element is managed", 
+                managedEncoded.stream().mapToInt(IntRoster::size).sum(), is(3));
+    }
+    
+    /**
+     * A list holding a null IntRoster is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rebalanceEncodedRejectsNullIntRosters() {
+        new RosterManager(2).rebalanceEncoded(Arrays.asList(
+                IntRoster.encode(new Roster("first").pushAll("a"), dictionary), null));
+    }
+    
+}
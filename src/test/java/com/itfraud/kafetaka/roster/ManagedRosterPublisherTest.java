@@ -0,0 +1,164 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class shows how the managed Rosters publisher is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class ManagedRosterPublisherTest {
+    
+    private RosterManager rosterManager;
+    
+    @Before
+    public void setUp() {
+        rosterManager = new RosterManager(2)
+                .useRandomSource(RandomSource.splittable(3))
+                .manage(new Roster("first").pushAll("a", "b", "c", "d", "e", "f", "g"))
+                .manage(new Roster("second").pushAll("h"));
+    }
+    
+    /**
+     * Managed Rosters are only emitted as they are requested.
+     */
+    @Test
+    public void emitOnlyWhatIsRequested() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        rosterManager.publishManagedRosters().subscribe(subscriber);
+        
+        assertThat("Nothing is emitted before a request", subscriber.received, is(empty()));
+        subscriber.subscription.request(2);
+        assertThat("Two Rosters are emitted for two requested", subscriber.received, hasSize(2));
+        assertThat("The publisher does not complete yet", subscriber.completed, is(false));
+        subscriber.subscription.request(10);
+        assertThat("The rest are emitted", subscriber.received, hasSize(4));
+        assertThat("And the publisher completes", subscriber.completed, is(true));
+    }
+    
+    /**
+     * The published managed Rosters are the same ones getManagedRosters gives
+     * with the same shuffle.
+     */
+    @Test
+    public void publishTheManagedRosters() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        rosterManager.publishManagedRosters().subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        rosterManager.useRandomSource(RandomSource.splittable(3));
+        
+        assertThat("The same managed Rosters", 
+                subscriber.received.stream().map(Roster::toString).collect(Collectors.toList()), 
+                is(rosterManager.getManagedRosters().stream().map(Roster::toString).collect(Collectors.toList())));
+    }
+    
+    /**
+     * Requesting from within onNext, one Roster at a time, works without 
+     * recursion.
+     */
+    @Test
+    public void requestFromOnNext() {
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(Roster item) {
+                super.onNext(item);
+                subscription.request(1);
+            }
+        };
+        rosterManager.publishManagedRosters().subscribe(subscriber);
+        subscriber.subscription.request(1);
+        
+        assertThat("Every Roster is emitted", subscriber.received, hasSize(4));
+        assertThat("And the publisher completes", subscriber.completed, is(true));
+    }
+    
+    /**
+     * Nothing is emitted after cancelling.
+     */
+    @Test
+    public void cancel() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        rosterManager.publishManagedRosters().subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+        
+        assertThat("Only the first Roster is emitted", subscriber.received, hasSize(1));
+        assertThat("The publisher does not complete", subscriber.completed, is(false));
+    }
+    
+    /**
+     * Requests which are not positive are signalled as errors.
+     */
+    @Test
+    public void invalidRequest() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        rosterManager.publishManagedRosters().subscribe(subscriber);
+        subscriber.subscription.request(0);
+        
+        assertThat("It is an error", subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+    }
+    
+    private static class RecordingSubscriber implements Flow.Subscriber<Roster> {
+        
+        protected Flow.Subscription subscription;
+        private final List<Roster> received = new ArrayList<>();
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Roster item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+        
+    }
+    
+}
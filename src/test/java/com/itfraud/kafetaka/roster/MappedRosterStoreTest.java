@@ -0,0 +1,163 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class shows how a MappedRosterStore is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class MappedRosterStoreTest {
+    
+    private Path file;
+    
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("rosters", ".store");
+        MappedRosterStore.write(file, Arrays.asList(
+                new Roster("first").pushAll("one", "two", "three"),
+                new Roster("second"),
+                new Roster("third").pushAll("four")));
+    }
+    
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    /**
+     * A store gives back the Rosters written into it.
+     */
+    @Test
+    public void storeKeepsRosters() throws IOException {
+        try (MappedRosterStore store = MappedRosterStore.open(file)) {
+            assertThat("It holds three Rosters", store.rosterCount(), is(3));
+            assertThat("They keep their names", store.name(2), is("third"));
+            assertThat("They keep their sizes", store.size(0), is(3));
+            assertThat("Empty Rosters stay empty", store.roster(1).isEmpty(), is(true));
+            assertThat("They keep their elements", 
+                    store.roster(0).stream().collect(Collectors.toList()), 
+                    contains("one", "two", "three"));
+            assertThat("Every one of them", 
+                    store.roster(2).stream().collect(Collectors.toList()), contains("four"));
+        }
+    }
+    
+    /**
+     * A store keeps any text, however it is encoded, and however big the store is.
+     */
+    @Test
+    public void storeKeepsAnyText() throws IOException {
+        Roster roster = new Roster("tr\u00e8s \u20ac").pushAll("\u00e9l\u00e9ment", "\ud83d\ude00", "plain");
+        for (int i = 0; i < 20_000; i++)
+            roster.push("\u20ac" + i);
+        MappedRosterStore.write(file, Arrays.asList(roster));
+        
+        try (MappedRosterStore store = MappedRosterStore.open(file)) {
+            assertThat("It keeps the name", store.name(0), is("tr\u00e8s \u20ac"));
+            assertThat("It keeps every element", 
+                    store.roster(0).stream().collect(Collectors.toList()), 
+                    is(roster.stream().collect(Collectors.toList())));
+        }
+    }
+    
+    /**
+     * Immutable collections, which throw when asked whether they hold null, 
+     * can be stored just like any other collection.
+     */
+    @Test
+    public void storeKeepsImmutableCollections() throws IOException {
+        MappedRosterStore.write(file, List.of(new Roster("only").pushAll("one", "two")));
+        
+        try (MappedRosterStore store = MappedRosterStore.open(file)) {
+            assertThat("It keeps every element", 
+                    store.roster(0).stream().collect(Collectors.toList()), 
+                    contains("one", "two"));
+        }
+    }
+    
+    /**
+     * A collection holding a null Roster is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void nullRostersAreRejected() throws IOException {
+        MappedRosterStore.write(file, Arrays.asList(new Roster("only"), null));
+    }
+    
+    /**
+     * The Rosters in a store can be managed straight away, and modified 
+     * without modifying the store.
+     */
+    @Test
+    public void storeRostersCanBeManaged() throws IOException {
+        try (MappedRosterStore store = MappedRosterStore.open(file)) {
+            RosterManager rosterManager = new RosterManager(2);
+            store.rosters().forEach(rosterManager::manage);
+            List<Roster> managedRosters = rosterManager.getManagedRosters();
+            
+            assertThat("Every element is managed", 
+                    managedRosters.stream().mapToInt(Roster::size).sum(), is(4));
+            assertThat("A store Roster can be modified", store.roster(0).pop(), is("three"));
+            assertThat("The store is left untouched", store.size(0), is(3));
+        }
+    }
+    
+    /**
+     * Once closed, a store cannot be read anymore.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void closedStoreFails() throws IOException {
+        MappedRosterStore store = MappedRosterStore.open(file);
+        Roster roster = store.roster(0);
+        store.close();
+        
+        roster.pop();
+    }
+    
+    /**
+     * Files which are not stores are rejected.
+     */
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        
+        MappedRosterStore.open(file);
+    }
+    
+}
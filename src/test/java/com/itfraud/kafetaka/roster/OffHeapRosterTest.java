@@ -0,0 +1,136 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * This class shows how an OffHeapRoster is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class OffHeapRosterTest {
+    
+    /**
+     * An OffHeapRoster is a last in, first out stack, just like a Roster.
+     */
+    @Test
+    public void offHeapRosterIsAStack() {
+        try (OffHeapRoster roster = new OffHeapRoster("roster")) {
+            roster.push("one").push("dos").push("tr\u00e8s");
+            
+            assertThat("It holds three elements", roster.size(), is(3));
+            assertThat("Elements are kept UTF-8 encoded", roster.byteSize(), is(11));
+            assertThat("The last element pushed comes out first", roster.pop(), is("tr\u00e8s"));
+            assertThat("It streams the rest in push order", 
+                    roster.stream().collect(Collectors.toList()), contains("one", "dos"));
+        }
+    }
+    
+    /**
+     * An OffHeapRoster grows as needed.
+     */
+    @Test
+    public void offHeapRosterGrows() {
+        try (OffHeapRoster roster = new OffHeapRoster("roster")) {
+            for (int i = 0; i < 1000; i++)
+                roster.push("element" + i);
+            
+            assertThat("It holds every element", roster.size(), is(1000));
+            assertThat("It keeps the first one", roster.stream().findFirst().get(), is("element0"));
+            assertThat("It keeps the last one", roster.pop(), is("element999"));
+        }
+    }
+    
+    /**
+     * An OffHeapRoster converts to and from a regular Roster.
+     */
+    @Test
+    public void offHeapRosterConvertsToRoster() {
+        Roster roster = new Roster("roster").pushAll("one", "two");
+        
+        try (OffHeapRoster offHeapRoster = OffHeapRoster.of(roster)) {
+            Roster copy = offHeapRoster.toRoster();
+            
+            assertThat("It keeps the name", copy.getName(), is("roster"));
+            assertThat("It keeps the elements", 
+                    copy.stream().collect(Collectors.toList()), contains("one", "two"));
+        }
+    }
+    
+    /**
+     * An OffHeapRoster can be managed through a Roster view, which reads its 
+     * elements off heap, and fails once the OffHeapRoster is closed.
+     */
+    @Test
+    public void offHeapRosterViewIsManaged() {
+        OffHeapRoster offHeapRoster = new OffHeapRoster("roster").push("one").push("two").push("three");
+        Roster view = offHeapRoster.asRoster();
+        List<Roster> managedRosters = new RosterManager(2).manage(view).getManagedRosters();
+        
+        assertThat("The view keeps the name", view.getName(), is("roster"));
+        assertThat("Every element gets managed", 
+                managedRosters.stream().flatMap(Roster::stream).collect(Collectors.toList()), 
+                containsInAnyOrder("one", "two", "three"));
+        
+        offHeapRoster.close();
+        try {
+            view.stream().findFirst();
+        } catch (IllegalStateException expected) {
+            return;
+        }
+        throw new AssertionError("The view should fail once the OffHeapRoster is closed");
+    }
+    
+    /**
+     * Popping an empty OffHeapRoster fails just like popping an empty Roster.
+     */
+    @Test(expected = EmptyStackException.class)
+    public void popEmptyOffHeapRoster() {
+        try (OffHeapRoster roster = new OffHeapRoster("roster")) {
+            roster.pop();
+        }
+    }
+    
+    /**
+     * Once closed, an OffHeapRoster cannot be used anymore.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void closedOffHeapRosterFails() {
+        OffHeapRoster roster = new OffHeapRoster("roster").push("one");
+        roster.close();
+        
+        assertThat("It is closed", roster.isClosed(), is(true));
+        roster.push("two");
+    }
+    
+}
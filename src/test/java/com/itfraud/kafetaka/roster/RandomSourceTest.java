@@ -0,0 +1,83 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * This class shows how the ready made RandomSources are supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class RandomSourceTest {
+    
+    private static final int BOUND = 10;
+    
+    /**
+     * Every ready made source stays within the bound we ask for.
+     */
+    @Test
+    public void sourcesStayWithinBounds() {
+        RandomSource[] sources = {
+            RandomSource.threadLocal(), 
+            RandomSource.splittable(), 
+            RandomSource.seeded(1), 
+            RandomSource.of(new Random())
+        };
+        for (RandomSource source : sources)
+            IntStream.range(0, 1000).forEach(i -> 
+                    assertThat("The random int is within [0, bound)", 
+                            source.nextInt(BOUND), 
+                            is(both(greaterThanOrEqualTo(0)).and(lessThan(BOUND)))));
+    }
+    
+    /**
+     * Seeded sources give the same sequence for the same seed, and so do
+     * the sources split from them.
+     */
+    @Test
+    public void seededSourcesAreRepeatable() {
+        RandomSource source = RandomSource.splittable(7);
+        RandomSource sameSeedSource = RandomSource.splittable(7);
+        RandomSource split = source.split();
+        RandomSource sameSeedSplit = sameSeedSource.split();
+        
+        assertThat("Sources with the same seed give the same ints", 
+                IntStream.range(0, 100).map(i -> source.nextInt(1000)).toArray(), 
+                is(IntStream.range(0, 100).map(i -> sameSeedSource.nextInt(1000)).toArray()));
+        assertThat("Their splits give the same ints too", 
+                IntStream.range(0, 100).map(i -> split.nextInt(1000)).toArray(), 
+                is(IntStream.range(0, 100).map(i -> sameSeedSplit.nextInt(1000)).toArray()));
+        assertThat("Splitting a SplittableRandom source gives a new source", 
+                split, is(not(sameInstance(source))));
+    }
+    
+}
@@ -0,0 +1,144 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * This class shows how a RosterCodec is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class RosterCodecTest {
+    
+    private final List<Roster> rosters = Arrays.asList(
+            new Roster("first").pushAll("one", "two", "\u00f1and\u00fa"),
+            new Roster("second"),
+            new Roster("third").pushAll("two", "one", "two"));
+    
+    /**
+     * Rosters encoded into a stream decode back into the same Rosters, and 
+     * whatever follows them is left in the stream.
+     */
+    @Test
+    public void streamRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RosterCodec codec = new RosterCodec();
+        codec.encode(rosters, out);
+        out.write(42);
+        
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertSameRosters(codec.decode(in));
+        assertThat("What follows is left in the stream", in.read(), is(42));
+    }
+    
+    /**
+     * Rosters encoded into a buffer decode back into the same Rosters.
+     */
+    @Test
+    public void bufferRoundTrip() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        RosterCodec codec = new RosterCodec();
+        codec.encode(rosters, buffer);
+        buffer.flip();
+        
+        assertSameRosters(codec.decode(buffer));
+        assertThat("The whole buffer is read", buffer.hasRemaining(), is(false));
+    }
+    
+    /**
+     * Deduplicating Strings takes fewer bytes when Strings repeat, and decodes
+     * into the same Rosters.
+     */
+    @Test
+    public void deduplicatedRoundTrip() throws IOException {
+        ByteBuffer plain = new RosterCodec().encode(rosters);
+        ByteBuffer deduplicated = new RosterCodec().useStringDeduplication(true).encode(rosters);
+        
+        assertThat("It takes fewer bytes", deduplicated.remaining(), is(lessThan(plain.remaining())));
+        assertSameRosters(new RosterCodec().decode(deduplicated));
+    }
+    
+    /**
+     * Bytes which were not encoded by a RosterCodec are rejected.
+     */
+    @Test(expected = IOException.class)
+    public void otherBytesAreRejected() throws IOException {
+        new RosterCodec().decode(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+    }
+    
+    /**
+     * Encoded Rosters which are cut short are rejected.
+     */
+    @Test(expected = IOException.class)
+    public void truncatedBytesAreRejected() throws IOException {
+        ByteBuffer encoded = new RosterCodec().encode(rosters);
+        encoded.limit(encoded.limit() - 1);
+        
+        new RosterCodec().decode(encoded);
+    }
+    
+    /**
+     * Immutable lists, which throw when asked whether they hold null, encode
+     * just like any other list.
+     */
+    @Test
+    public void immutableListRoundTrip() throws IOException {
+        ByteBuffer encoded = new RosterCodec().encode(
+                List.of(rosters.get(0), rosters.get(1), rosters.get(2)));
+        
+        assertSameRosters(new RosterCodec().decode(encoded));
+    }
+    
+    /**
+     * A list holding a null Roster is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void nullRostersAreRejected() {
+        new RosterCodec().encode(Arrays.asList(rosters.get(0), null));
+    }
+    
+    private void assertSameRosters(List<Roster> decoded) {
+        assertThat("The same names, in order", 
+                decoded.stream().map(Roster::getName).collect(Collectors.toList()), 
+                contains("first", "second", "third"));
+        for (int i = 0; i < rosters.size(); i++)
+            assertThat("The same elements, in order", 
+                    decoded.get(i).stream().collect(Collectors.toList()), 
+                    is(rosters.get(i).stream().collect(Collectors.toList())));
+    }
+    
+}
@@ -0,0 +1,208 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class shows how a RosterLayoutPlan is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class RosterLayoutPlanTest {
+    
+    private static final int ROSTER_MAXIMUM_NUMBER_OF_ELEMENTS = 3;
+    private static final long SEED = 42;
+    
+    private List<Roster> providedRosters;
+    
+    /**
+     * Creates three provided Rosters: one over the maximum size, one with room
+     * left and an empty one.
+     */
+    @Before
+    public void setUp() {
+        providedRosters = Arrays.asList(
+                roster("big", 8), roster("small", 1), new Roster("empty"));
+    }
+    
+    /**
+     * A plan materializes into the very same managed Rosters a RosterManager
+     * builds with the same shuffle.
+     */
+    @Test
+    public void planMaterializesLikeTheRosterManager() {
+        for (ShuffleMode shuffleMode : ShuffleMode.values()) {
+            RosterLayoutPlan plan = rosterManager(shuffleMode).getLayoutPlan();
+            List<Roster> managedRosters = rosterManager(shuffleMode).getManagedRosters();
+            List<Roster> materializedRosters = plan.materialize(providedRosters);
+            
+            assertThat("The plan lays out the same Rosters", 
+                    materializedRosters, is(managedRosters));
+            IntStream.range(0, managedRosters.size()).forEach(i -> 
+                    assertThat("Each Roster holds the same elements, in the same order", 
+                            elementsOf(materializedRosters.get(i)), 
+                            is(elementsOf(managedRosters.get(i)))));
+        }
+    }
+    
+    /**
+     * A plan is made of moves worked out from the Roster sizes: the surplus of 
+     * the big Roster fills the small one first, and a new Roster next.
+     */
+    @Test
+    public void planMovesTheSurplus() {
+        RosterLayoutPlan plan = rosterManager(ShuffleMode.FULL).getLayoutPlan();
+        
+        assertThat("There is one new Roster", plan.targetCount(), is(4));
+        assertThat("The new Roster is an automatic one", 
+                plan.targetName(3), is("Automatic Roster1"));
+        assertThat("The small Roster is filled up", plan.targetSize(1), is(3));
+        assertThat("The empty Roster stays empty", plan.targetSize(2), is(0));
+        assertThat("The new Roster takes the rest", plan.targetSize(3), is(3));
+        assertThat("Keep the big, keep the small, fill the small, fill the new one", 
+                plan.moveCount(), is(4));
+        assertThat("The small Roster is filled from the big one surplus", 
+                plan.moveSourceOffset(2), is(ROSTER_MAXIMUM_NUMBER_OF_ELEMENTS));
+    }
+    
+    /**
+     * Plans made with the same shuffle are equal.
+     */
+    @Test
+    public void samePlanForTheSameShuffle() {
+        assertThat("The same seed gives the same plan", 
+                rosterManager(ShuffleMode.FULL).getLayoutPlan(), 
+                is(rosterManager(ShuffleMode.FULL).getLayoutPlan()));
+    }
+    
+    /**
+     * A plan can only be materialized out of the Rosters it was made for.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void planDoesNotMatchChangedRosters() {
+        RosterLayoutPlan plan = rosterManager(ShuffleMode.FULL).getLayoutPlan();
+        providedRosters.get(1).push("another element");
+        plan.materialize(providedRosters);
+    }
+    
+    /**
+     * Views hold the same elements as the materialized Rosters, without 
+     * copying them.
+     */
+    @Test
+    public void viewsReadLikeMaterializedRosters() {
+        RosterLayoutPlan plan = rosterManager(ShuffleMode.FULL).getLayoutPlan();
+        List<Roster> views = plan.view(providedRosters);
+        List<Roster> materializedRosters = plan.materialize(providedRosters);
+        
+        IntStream.range(0, views.size()).forEach(i -> {
+            assertThat("Each view has the same size", 
+                    views.get(i).size(), is(materializedRosters.get(i).size()));
+            assertThat("Each view holds the same elements, in the same order", 
+                    elementsOf(views.get(i)), is(elementsOf(materializedRosters.get(i))));
+        });
+    }
+    
+    /**
+     * Modifying a view does not modify the provided Rosters, and modifying a 
+     * provided Roster does not modify the views.
+     */
+    @Test
+    public void viewsAndProvidedRostersAreCopiedOnWrite() {
+        Roster bigRoster = providedRosters.get(0);
+        List<String> bigElements = elementsOf(bigRoster);
+        List<Roster> views = rosterManager(ShuffleMode.FULL).getManagedRosterViews();
+        Roster bigView = views.get(0);
+        List<String> bigViewElements = elementsOf(bigView);
+        
+        bigView.pop();
+        bigView.push("new view element");
+        assertThat("The provided Roster does not see the view changes", 
+                elementsOf(bigRoster), is(bigElements));
+        
+        bigRoster.pop();
+        bigRoster.push("new provided element");
+        Roster smallView = views.get(1);
+        assertThat("The views do not see the provided Roster changes", 
+                smallView.stream().anyMatch("new provided element"::equals), is(false));
+        assertThat("The view keeps what we did to it", 
+                elementsOf(bigView).subList(0, 2), is(bigViewElements.subList(0, 2)));
+        assertThat("The view keeps what we pushed to it", 
+                bigView.pop(), is("new view element"));
+    }
+    
+    /**
+     * Views over provided Rosters which are views themselves, such as the 
+     * Rosters of a store, read through them rather than copying them.
+     */
+    @Test
+    public void viewsOfViewsCopyNothing() {
+        Roster bigRoster = providedRosters.get(0);
+        AtomicInteger reads = new AtomicInteger();
+        List<Roster> viewRosters = Arrays.asList(
+                Roster.view(bigRoster.getName(), index -> {
+                    reads.incrementAndGet();
+                    return bigRoster.elementAt(index);
+                }, bigRoster.size()), 
+                providedRosters.get(1), providedRosters.get(2));
+        RosterLayoutPlan plan = rosterManager(ShuffleMode.FULL).getLayoutPlan();
+        
+        List<Roster> views = plan.view(viewRosters);
+        assertThat("Nothing is read up front", reads.get(), is(0));
+        assertThat("Each view reads its own elements only", 
+                elementsOf(views.get(3)), is(elementsOf(plan.materialize(providedRosters).get(3))));
+        assertThat("Only the elements asked for are read", reads.get(), is(3));
+    }
+    
+    private RosterManager rosterManager(ShuffleMode shuffleMode) {
+        RosterManager rosterManager = new RosterManager(ROSTER_MAXIMUM_NUMBER_OF_ELEMENTS)
+                .useShuffleMode(shuffleMode)
+                .useRandomSource(RandomSource.splittable(SEED));
+        providedRosters.forEach(rosterManager::manage);
+        return rosterManager;
+    }
+    
+    private static Roster roster(String name, int size) {
+        Roster roster = new Roster(name);
+        IntStream.range(0, size).forEach(i -> roster.push(name + " " + i));
+        return roster;
+    }
+    
+    private static List<String> elementsOf(Roster roster) {
+        return roster.stream().collect(Collectors.toList());
+    }
+    
+}
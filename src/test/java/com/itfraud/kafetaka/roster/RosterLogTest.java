@@ -0,0 +1,154 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class shows how a RosterLog is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class RosterLogTest {
+    
+    private Path directory;
+    
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("roster-log");
+    }
+    
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(file);
+        }
+    }
+    
+    /**
+     * Logged changes are replayed when the log is opened again.
+     */
+    @Test
+    public void changesAreReplayed() throws IOException {
+        try (RosterLog log = RosterLog.open(directory)) {
+            assertThat("A new log recovers nothing", log.recoveredRosters(), is(empty()));
+            log.logManage(new Roster("first").pushAll("one", "two"));
+            log.logManage(new Roster("second").pushAll("three"));
+            log.logPush("first", "four");
+            log.logPop("second");
+            log.logManage(new Roster("third"));
+            log.logUnmanage("third");
+            log.sync();
+        }
+        
+        try (RosterLog log = RosterLog.open(directory)) {
+            List<Roster> rosters = log.recoveredRosters();
+            
+            assertThat("The managed Rosters are recovered, in order", 
+                    rosters.stream().map(Roster::getName).collect(Collectors.toList()), 
+                    contains("first", "second"));
+            assertThat("Pushes are replayed", 
+                    rosters.get(0).stream().collect(Collectors.toList()), 
+                    contains("one", "two", "four"));
+            assertThat("Pops are replayed", rosters.get(1).isEmpty(), is(true));
+        }
+    }
+    
+    /**
+     * Checkpoints start a new log, and the log written after the last 
+     * checkpoint is replayed on top of it.
+     */
+    @Test
+    public void checkpointsAreRecovered() throws IOException {
+        try (RosterLog log = RosterLog.open(directory, 3)) {
+            log.logManage(new Roster("first").pushAll("one"));
+            for (int i = 0; i < 10; i++)
+                log.logPush("first", "element" + i);
+            log.checkpoint().join();
+            log.logPop("first");
+            log.sync();
+        }
+        
+        try (RosterLog log = RosterLog.open(directory)) {
+            Roster first = log.recoveredRosters().get(0);
+            
+            assertThat("Every change is recovered", first.size(), is(10));
+            assertThat("Including those after the checkpoint", first.pop(), is("element8"));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat("Only the last generation is kept", files.count(), is(2L));
+        }
+    }
+    
+    /**
+     * A last change which was only half written is ignored.
+     */
+    @Test
+    public void halfWrittenChangesAreIgnored() throws IOException {
+        try (RosterLog log = RosterLog.open(directory)) {
+            log.logManage(new Roster("first").pushAll("one"));
+            log.sync();
+        }
+        Files.write(directory.resolve("log-0"), new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        
+        try (RosterLog log = RosterLog.open(directory)) {
+            assertThat("The complete changes are recovered", 
+                    log.recoveredRosters().get(0).size(), is(1));
+            log.logPush("first", "two");
+            log.sync();
+        }
+        try (RosterLog log = RosterLog.open(directory)) {
+            assertThat("And new changes are appended after them", 
+                    log.recoveredRosters().get(0).size(), is(2));
+        }
+    }
+    
+    /**
+     * A closed log takes no more changes.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void closedLogFails() throws IOException {
+        RosterLog log = RosterLog.open(directory);
+        log.close();
+        
+        log.logPop("first");
+    }
+    
+}
@@ -26,8 +26,15 @@ For more information, please refer to <http://unlicense.org>
  */
 package com.itfraud.kafetaka.roster;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import org.junit.Before;
@@ -172,4 +179,561 @@ public class RosterManagerTest {
                 totalNumberOfOneElements, is(not(1000)));
     }
     
+    /**
+     * A RosterManager knows, by name, which Rosters it is managing, and it 
+     * can stop managing any of them.
+     * 
+     * Once a Roster is not managed anymore, it can be added again.
+     */
+    @Test
+    public void unmanageRoster() {
+        rosterManager
+                .manage(providedRoster)
+                .manage(anotherProvidedRoster)
+                .unmanage(ROSTER_NAME);
+        
+        assertThat("The removed Roster is not managed", 
+                rosterManager.isManaged(ROSTER_NAME), is(false));
+        assertThat("The other Roster is still managed", 
+                rosterManager.isManaged(ANOTHER_ROSTER_NAME), is(true));
+        assertThat("The RosterManager contains only the other Roster", 
+                rosterManager.getManagedRosters(), contains(anotherProvidedRoster));
+        
+        rosterManager.manage(providedRoster);
+        assertThat("The removed Roster can be managed again", 
+                rosterManager.isManaged(ROSTER_NAME), is(true));
+    }
+    
+    /**
+     * You cannot stop managing a Roster the RosterManager does not know about.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void tryingToUnmanageAnUnknownRoster() {
+        rosterManager.unmanage(ROSTER_NAME);
+    }
+    
+    /**
+     * The managed Rosters come out in the same order the provided Rosters
+     * were added.
+     */
+    @Test
+    public void managedRostersKeepTheProvidedOrder() {
+        rosterManager
+                .manage(anotherProvidedRoster)
+                .manage(providedRoster);
+        
+        assertThat("The managed Rosters follow the provided order", 
+                rosterManager.getManagedRosters(), 
+                contains(anotherProvidedRoster, providedRoster));
+    }
+    
+    /**
+     * When rebalancing incrementally, asking twice for the managed Rosters 
+     * without changing anything returns the very same managed Rosters.
+     */
+    @Test
+    public void incrementalRebalancingReusesTheLastLayout() {
+        providedRoster.push("one").push("two").push("three");
+        rosterManager
+                .useIncrementalRebalancing(true)
+                .manage(providedRoster);
+        List<Roster> managedRosters = rosterManager.getManagedRosters();
+        
+        assertThat("Nothing changed, so we get the same layout", 
+                rosterManager.getManagedRosters(), is(managedRosters));
+        assertThat("Nothing changed, so we get the same elements", 
+                rosterManager.getManagedRosters().get(0).stream().collect(Collectors.toList()), 
+                is(managedRosters.get(0).stream().collect(Collectors.toList())));
+    }
+    
+    /**
+     * When rebalancing incrementally, a provided Roster that changes is 
+     * shuffled again, and a managed Roster that we change is rebuilt.
+     */
+    @Test
+    public void incrementalRebalancingNoticesChanges() {
+        providedRoster.push("one");
+        rosterManager
+                .useIncrementalRebalancing(true)
+                .manage(providedRoster);
+        rosterManager.getManagedRosters().get(0).pop();
+        
+        assertThat("The managed Roster we emptied is rebuilt", 
+                rosterManager.getManagedRosters().get(0).size(), is(1));
+        
+        providedRoster.push("two").push("three");
+        List<Roster> managedRosters = rosterManager.getManagedRosters();
+        assertThat("The new elements make it to the managed Rosters", 
+                managedRosters, hasSize(2));
+        assertThat("All the elements are there", 
+                managedRosters.stream().flatMap(Roster::stream).collect(Collectors.toList()), 
+                containsInAnyOrder("one", "two", "three"));
+    }
+    
+    /**
+     * A snapshot is only rebuilt when something changes: a Roster is managed,
+     * a provided Roster gets a new element, or we ask for a reshuffle.
+     */
+    @Test
+    public void snapshotIsRebuiltOnlyWhenSomethingChanges() {
+        providedRoster.push("one").push("two");
+        rosterManager.manage(providedRoster);
+        List<Roster> snapshot = rosterManager.getManagedRostersSnapshot();
+        
+        assertThat("Nothing changed, so we get the same snapshot", 
+                rosterManager.getManagedRostersSnapshot(), is(sameInstance(snapshot)));
+        
+        rosterManager.manage(anotherProvidedRoster);
+        List<Roster> newRosterSnapshot = rosterManager.getManagedRostersSnapshot();
+        assertThat("A new Roster means a new snapshot", 
+                newRosterSnapshot, contains(providedRoster, anotherProvidedRoster));
+        
+        anotherProvidedRoster.push("three");
+        List<Roster> newElementSnapshot = rosterManager.getManagedRostersSnapshot();
+        assertThat("A new element means a new snapshot", 
+                newElementSnapshot, is(not(sameInstance(newRosterSnapshot))));
+        assertThat("The new element is within the snapshot", 
+                newElementSnapshot.get(1).size(), is(1));
+        
+        rosterManager.reshuffle();
+        assertThat("A reshuffle means a new snapshot", 
+                rosterManager.getManagedRostersSnapshot(), is(not(sameInstance(newElementSnapshot))));
+    }
+    
+    /**
+     * Taking a snapshot does not fool the incremental rebalancing: a provided 
+     * Roster that changed before the snapshot still changes the managed Rosters.
+     */
+    @Test
+    public void snapshotDoesNotHideChangesFromIncrementalRebalancing() {
+        providedRoster.push("one").push("two").push("three");
+        rosterManager
+                .useIncrementalRebalancing(true)
+                .manage(providedRoster);
+        assertThat("Three elements make two managed Rosters", 
+                rosterManager.getManagedRosters(), hasSize(2));
+        
+        providedRoster.push("four").push("five");
+        assertThat("The snapshot sees the new elements", 
+                rosterManager.getManagedRostersSnapshot(), hasSize(3));
+        assertThat("And so does the next incremental rebalance", 
+                rosterManager.getManagedRosters(), hasSize(3));
+    }
+    
+    /**
+     * The Rosters within a snapshot cannot be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotRostersAreReadOnly() {
+        providedRoster.push("one");
+        rosterManager.manage(providedRoster);
+        Roster snapshotRoster = rosterManager.getManagedRostersSnapshot().get(0);
+        
+        assertThat("The snapshot Roster is read only", 
+                snapshotRoster.isReadOnly(), is(true));
+        snapshotRoster.pop();
+    }
+    
+    /**
+     * Shuffling in parallel gives the same managed Rosters, in the same order,
+     * as shuffling sequentially; only the order of the elements within them changes.
+     */
+    @Test
+    public void parallelShuffleKeepsTheProvidedOrder() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RosterManager parallelRosterManager = new RosterManager(100)
+                    .useParallelShuffle(pool);
+            IntStream.range(0, 200).forEach(i -> {
+                Roster roster = new Roster("roster " + i);
+                IntStream.range(0, 100).forEach(j -> roster.push(i + "-" + j));
+                parallelRosterManager.manage(roster);
+            });
+            List<Roster> managedRosters = parallelRosterManager.getManagedRosters();
+            
+            assertThat("There is a managed Roster for each provided Roster", 
+                    managedRosters, hasSize(200));
+            IntStream.range(0, 200).forEach(i -> {
+                Roster managedRoster = managedRosters.get(i);
+                assertThat("The managed Rosters keep the provided order", 
+                        managedRoster.getName(), is("roster " + i));
+                assertThat("Each managed Roster keeps its own elements", 
+                        managedRoster.stream().allMatch(element -> element.startsWith(i + "-")), 
+                        is(true));
+                assertThat("Each managed Roster keeps all its elements", 
+                        managedRoster.size(), is(100));
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Two RosterManagers shuffling with sources seeded alike come up with the
+     * same managed Rosters, whether they shuffle sequentially, on a ForkJoinPool
+     * or on virtual threads, even when the shuffle is split into several runs.
+     */
+    @Test
+    public void seededRandomSourceGivesTheSameShuffles() {
+        List<Roster> providedRosters = new ArrayList<>();
+        int[] sizes = {15_000, 3_000, 9_000, 20_000, 100, 100, 7_000};
+        for (int i = 0; i < sizes.length; i++) {
+            Roster roster = new Roster("roster " + i);
+            for (int j = 0; j < sizes[i]; j++)
+                roster.push(i + "-" + j);
+            providedRosters.add(roster);
+        }
+        assertThat("The provided Rosters make more than a single run", 
+                Arrays.stream(sizes).sum(), is(greaterThan((int) ShuffleRuns.ELEMENTS_PER_RUN)));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<List<String>> sequentialElements = elementsOf(new RosterManager(10_000)
+                    .useRandomSource(RandomSource.splittable(42))
+                    .manageAll(providedRosters)
+                    .getManagedRosters());
+            List<List<String>> parallelElements = elementsOf(new RosterManager(10_000)
+                    .useRandomSource(RandomSource.splittable(42))
+                    .useParallelShuffle(pool)
+                    .manageAll(providedRosters)
+                    .getManagedRosters());
+            List<List<String>> virtualThreadElements = elementsOf(new RosterManager(10_000)
+                    .useRandomSource(RandomSource.splittable(42))
+                    .useVirtualThreadShuffle()
+                    .manageAll(providedRosters)
+                    .getManagedRosters());
+            List<List<String>> streamedElements = elementsOf(new RosterManager(10_000)
+                    .useRandomSource(RandomSource.splittable(42))
+                    .manageAll(providedRosters)
+                    .streamManagedRosters()
+                    .collect(Collectors.toList()));
+            List<List<String>> anotherSeedElements = elementsOf(new RosterManager(10_000)
+                    .useRandomSource(RandomSource.splittable(43))
+                    .manageAll(providedRosters)
+                    .getManagedRosters());
+            
+            assertThat("The same seed gives the same shuffle on a ForkJoinPool", 
+                    parallelElements, is(sequentialElements));
+            assertThat("The same seed gives the same shuffle on virtual threads", 
+                    virtualThreadElements, is(sequentialElements));
+            assertThat("The same seed gives the same lazy shuffle", 
+                    streamedElements, is(sequentialElements));
+            assertThat("A different seed gives a different shuffle", 
+                    anotherSeedElements, is(not(sequentialElements)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * When only the surplus is shuffled, the elements moved out of an 
+     * overflowing Roster are still a random choice, and no element gets lost.
+     */
+    @Test
+    public void surplusOnlyShuffleMovesRandomElements() {
+        providedRoster.push("one").push("two").push("three");
+        rosterManager
+                .useShuffleMode(ShuffleMode.SURPLUS_ONLY)
+                .manage(providedRoster);
+        
+        long timesOneWasMoved = IntStream.range(0, 1000)
+                .mapToObj(i -> rosterManager.getManagedRosters())
+                .peek(managedRosters -> assertThat("No element gets lost", 
+                        managedRosters.stream().flatMap(Roster::stream).collect(Collectors.toList()), 
+                        containsInAnyOrder("one", "two", "three")))
+                .filter(managedRosters -> managedRosters.get(1).stream().anyMatch("one"::equals))
+                .count();
+        
+        assertThat("The element one is moved at least once", 
+                timesOneWasMoved, is(not(0L)));
+        assertThat("The element one is not always moved", 
+                timesOneWasMoved, is(not(1000L)));
+    }
+    
+    /**
+     * Leftovers fill the room left in the other managed Rosters first, and 
+     * only what does not fit goes to new Rosters.
+     */
+    @Test
+    public void fillTheRoomLeftBeforeCreatingNewRosters() {
+        // Remember, on these tests, a managed roster maximum size is two elements
+        providedRoster.push("one").push("two").push("three").push("four").push("five");
+        anotherProvidedRoster.push("six");
+        List<Roster> managedRosters = rosterManager
+                .manage(providedRoster)
+                .manage(anotherProvidedRoster)
+                .getManagedRosters();
+        
+        assertThat("One new Roster is enough for the leftovers", 
+                managedRosters, hasSize(3));
+        managedRosters.stream().forEach(eachRoster -> 
+                assertThat("Each Roster contains two elements", 
+                eachRoster.size(), is(2)));
+        assertThat("The new Roster is an automatic one", 
+                managedRosters.get(2).getName(), is("Automatic Roster1"));
+    }
+    
+    /**
+     * The lazy stream of managed Rosters gives the same managed Rosters, in 
+     * the same order, as getManagedRosters does with the same shuffle.
+     */
+    @Test
+    public void streamManagedRostersLazily() {
+        for (ShuffleMode shuffleMode : ShuffleMode.values()) {
+            RosterManager streamingManager = new RosterManager(3)
+                    .useShuffleMode(shuffleMode)
+                    .useRandomSource(RandomSource.splittable(7));
+            RosterManager listingManager = new RosterManager(3)
+                    .useShuffleMode(shuffleMode)
+                    .useRandomSource(RandomSource.splittable(7));
+            for (RosterManager manager : Arrays.asList(streamingManager, listingManager))
+                manager.manage(new Roster("room").pushAll("a"))
+                        .manage(new Roster("empty"))
+                        .manage(new Roster("surplus").pushAll("b", "c", "d", "e", "f", "g", "h", "i", "j"))
+                        .manage(new Roster("full").pushAll("k", "l", "m"));
+            
+            List<String> streamed = streamingManager.streamManagedRosters()
+                    .map(roster -> roster.getName() + roster.stream().collect(Collectors.toList()))
+                    .collect(Collectors.toList());
+            List<String> listed = listingManager.getManagedRosters().stream()
+                    .map(roster -> roster.getName() + roster.stream().collect(Collectors.toList()))
+                    .collect(Collectors.toList());
+            
+            assertThat("The same managed Rosters, in the same order", streamed, is(listed));
+        }
+    }
+    
+    /**
+     * An asynchronous rebalance gives the same managed Rosters as a blocking 
+     * one with the same shuffle: the one drawn from a split of the source, 
+     * taken when we asked for it.
+     */
+    @Test
+    public void asyncRebalanceGivesTheManagedRosters() {
+        providedRoster.pushAll("one", "two", "three", "four", "five");
+        anotherProvidedRoster.push("six");
+        rosterManager.manage(providedRoster).manage(anotherProvidedRoster);
+        
+        List<Roster> asyncRosters = rosterManager.useRandomSource(RandomSource.splittable(5))
+                .getManagedRostersAsync(Runnable::run).join();
+        List<Roster> managedRosters = rosterManager.useRandomSource(RandomSource.splittable(5).split())
+                .getManagedRosters();
+        
+        assertThat("The same managed Rosters", 
+                asyncRosters.stream().map(Roster::toString).collect(Collectors.toList()), 
+                is(managedRosters.stream().map(Roster::toString).collect(Collectors.toList())));
+    }
+    
+    /**
+     * An asynchronous rebalance never draws from the source the blocking 
+     * rebalances use, so running both at once leaves that source alone.
+     */
+    @Test
+    public void asyncRebalanceDrawsFromASplitSource() {
+        AtomicInteger sharedDraws = new AtomicInteger();
+        AtomicInteger splitDraws = new AtomicInteger();
+        providedRoster.pushAll("one", "two", "three");
+        rosterManager.useRandomSource(new RandomSource() {
+                    @Override
+                    public int nextInt(int bound) {
+                        sharedDraws.incrementAndGet();
+                        return 0;
+                    }
+                    
+                    @Override
+                    public RandomSource split() {
+                        return bound -> {
+                            splitDraws.incrementAndGet();
+                            return 0;
+                        };
+                    }
+                })
+                .manage(providedRoster);
+        List<Runnable> tasks = new ArrayList<>();
+        
+        CompletableFuture<List<Roster>> managedRosters = rosterManager.getManagedRostersAsync(tasks::add);
+        tasks.forEach(Runnable::run);
+        
+        assertThat("The rebalance is done", managedRosters.join(), hasSize(2));
+        assertThat("It drew from the split source", splitDraws.get(), is(3));
+        assertThat("And never from the shared one", sharedDraws.get(), is(0));
+    }
+    
+    /**
+     * Callers asking at the same time share a single rebalance, but each one 
+     * gets Rosters of its own.
+     */
+    @Test
+    public void asyncCallersShareTheRebalance() {
+        providedRoster.pushAll("one", "two", "three");
+        rosterManager.manage(providedRoster);
+        List<Runnable> tasks = new ArrayList<>();
+        
+        CompletableFuture<List<Roster>> first = rosterManager.getManagedRostersAsync(tasks::add);
+        CompletableFuture<List<Roster>> second = rosterManager.getManagedRostersAsync(tasks::add);
+        assertThat("A single rebalance is started", tasks, hasSize(1));
+        tasks.get(0).run();
+        first.join().get(0).pop();
+        
+        assertThat("Both callers get the managed Rosters", second.join(), hasSize(2));
+        assertThat("Each one gets Rosters of its own", second.join().get(0).size(), is(2));
+    }
+    
+    /**
+     * Once every caller sharing a rebalance cancels, nobody joins it anymore.
+     */
+    @Test
+    public void cancelledAsyncRebalanceIsNotShared() {
+        providedRoster.pushAll("one", "two", "three");
+        rosterManager.manage(providedRoster);
+        List<Runnable> tasks = new ArrayList<>();
+        
+        CompletableFuture<List<Roster>> first = rosterManager.getManagedRostersAsync(tasks::add);
+        first.cancel(false);
+        CompletableFuture<List<Roster>> second = rosterManager.getManagedRostersAsync(tasks::add);
+        tasks.forEach(Runnable::run);
+        
+        assertThat("A new rebalance is started", tasks, hasSize(2));
+        assertThat("The cancelled caller gets nothing", first.isCancelled(), is(true));
+        assertThat("The new caller gets the managed Rosters", second.join(), hasSize(2));
+    }
+    
+    /**
+     * An asynchronous rebalance works on the provided Rosters as they were 
+     * when we asked for it, whatever happens before it runs.
+     */
+    @Test
+    public void asyncRebalanceSeesTheRostersAsTheyWereWhenAsked() {
+        providedRoster.pushAll("one", "two");
+        rosterManager.manage(providedRoster);
+        List<Runnable> tasks = new ArrayList<>();
+        
+        CompletableFuture<List<Roster>> managedRosters = rosterManager.getManagedRostersAsync(tasks::add);
+        providedRoster.push("three");
+        rosterManager.manage(anotherProvidedRoster.push("four"));
+        tasks.forEach(Runnable::run);
+        
+        assertThat("The Roster managed afterwards is left out", 
+                managedRosters.join(), hasSize(1));
+        assertThat("And so is the element pushed afterwards", 
+                managedRosters.join().get(0).stream().collect(Collectors.toList()), 
+                containsInAnyOrder("one", "two"));
+    }
+    
+    /**
+     * A rebalance cancelled by every caller before it starts does not shuffle
+     * anything at all.
+     */
+    @Test
+    public void cancelledAsyncRebalanceDoesNoShuffleWork() {
+        AtomicInteger draws = new AtomicInteger();
+        providedRoster.pushAll("one", "two", "three");
+        anotherProvidedRoster.push("four");
+        rosterManager.useRandomSource(bound -> {
+                    draws.incrementAndGet();
+                    return 0;
+                })
+                .manage(providedRoster)
+                .manage(anotherProvidedRoster);
+        List<Runnable> tasks = new ArrayList<>();
+        
+        CompletableFuture<List<Roster>> first = rosterManager.getManagedRostersAsync(tasks::add);
+        CompletableFuture<List<Roster>> second = rosterManager.getManagedRostersAsync(tasks::add);
+        first.cancel(false);
+        second.cancel(false);
+        tasks.forEach(Runnable::run);
+        
+        assertThat("Nothing was drawn", draws.get(), is(0));
+    }
+    
+    /**
+     * Shuffling on virtual threads keeps every managed Roster in the provided 
+     * order, with its own elements.
+     */
+    @Test
+    public void virtualThreadShuffleKeepsTheProvidedOrder() {
+        RosterManager virtualThreadRosterManager = new RosterManager(100)
+                .useVirtualThreadShuffle();
+        IntStream.range(0, 300).forEach(i -> {
+            Roster roster = new Roster("roster " + i);
+            IntStream.range(0, 100).forEach(j -> roster.push(i + "-" + j));
+            virtualThreadRosterManager.manage(roster);
+        });
+        List<Roster> managedRosters = virtualThreadRosterManager.getManagedRosters();
+        
+        assertThat("There is a managed Roster for each provided Roster", 
+                managedRosters, hasSize(300));
+        IntStream.range(0, 300).forEach(i -> {
+            Roster managedRoster = managedRosters.get(i);
+            assertThat("The managed Rosters keep the provided order", 
+                    managedRoster.getName(), is("roster " + i));
+            assertThat("Each managed Roster keeps all its own elements", 
+                    managedRoster.stream().filter(element -> element.startsWith(i + "-")).count(), 
+                    is(100L));
+        });
+    }
+    
+    /**
+     * Many RosterManagers can rebalance at once, each one on a virtual thread.
+     */
+    @Test
+    public void rebalanceOnVirtualThreads() {
+        List<CompletableFuture<List<Roster>>> rebalances = IntStream.range(0, 1000)
+                .mapToObj(i -> new RosterManager(2)
+                        .manage(new Roster("tenant " + i).pushAll("one", "two", "three"))
+                        .getManagedRostersAsync())
+                .collect(Collectors.toList());
+        
+        rebalances.forEach(rebalance -> 
+                assertThat("Every tenant gets its managed Rosters", rebalance.join(), hasSize(2)));
+    }
+    
+    /**
+     * Many Rosters can be managed at once, and they keep their order.
+     */
+    @Test
+    public void manageAllAtOnce() {
+        rosterManager.manage(new Roster("zero"));
+        rosterManager.manageAll(Arrays.asList(providedRoster, anotherProvidedRoster))
+                .manageAll(Stream.of(new Roster("third turn")));
+        
+        assertThat("Every Roster is managed, in order", 
+                rosterManager.getManagedRosters().stream().map(Roster::getName).collect(Collectors.toList()), 
+                contains("zero", ROSTER_NAME, ANOTHER_ROSTER_NAME, "third turn"));
+    }
+    
+    /**
+     * A batch holding the same Roster twice is rejected as a whole.
+     */
+    @Test
+    public void manageAllRejectsDuplicatesWithinTheBatch() {
+        try {
+            rosterManager.manageAll(Arrays.asList(providedRoster, anotherProvidedRoster, providedRoster));
+        } catch (IllegalArgumentException expected) {
+            assertThat("No Roster is managed", rosterManager.isManaged(ANOTHER_ROSTER_NAME), is(false));
+            return;
+        }
+        throw new AssertionError("The batch should have been rejected");
+    }
+    
+    /**
+     * A batch holding a Roster already managed is rejected as a whole.
+     */
+    @Test
+    public void manageAllRejectsRostersAlreadyManaged() {
+        rosterManager.manage(anotherProvidedRoster);
+        try {
+            rosterManager.manageAll(Stream.of(providedRoster, new Roster(ANOTHER_ROSTER_NAME)));
+        } catch (IllegalArgumentException expected) {
+            assertThat("No Roster is managed", rosterManager.isManaged(ROSTER_NAME), is(false));
+            return;
+        }
+        throw new AssertionError("The batch should have been rejected");
+    }
+    
+    private static List<List<String>> elementsOf(List<Roster> rosters) {
+        return rosters.stream()
+                .map(roster -> roster.stream().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+    
 }
@@ -0,0 +1,121 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <http://unlicense.org>
+ */
+package com.itfraud.kafetaka.roster;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * This class shows how a RosterTable is supposed to work.
+ * 
+ * @author Norville Rogers
+ */
+public class RosterTableTest {
+    
+    private final RosterTable table = new RosterTable()
+            .addRoster("first", "one", "two", "three")
+            .addRoster("second")
+            .addRoster("third", "four");
+    
+    /**
+     * A table knows the name and size of every Roster, and every element.
+     */
+    @Test
+    public void tableHoldsRosters() {
+        assertThat("The table holds three Rosters", table.rosterCount(), is(3));
+        assertThat("The table holds four elements", table.elementCount(), is(4));
+        assertThat("The Rosters keep their names", table.name(2), is("third"));
+        assertThat("The Rosters keep their sizes", table.size(0), is(3));
+        assertThat("The empty Roster is empty", table.size(1), is(0));
+        assertThat("The Rosters keep their elements", table.element(0, 2), is("three"));
+    }
+    
+    /**
+     * A table Roster can be read as a Roster, which can be modified without
+     * modifying the table.
+     */
+    @Test
+    public void tableRosterIsARoster() {
+        Roster roster = table.roster(0);
+        
+        assertThat("It has the table Roster name", roster.getName(), is("first"));
+        assertThat("It has the table Roster elements", 
+                roster.stream().collect(Collectors.toList()), contains("one", "two", "three"));
+        assertThat("It pops the last element", roster.pop(), is("three"));
+        assertThat("The table is left untouched", table.size(0), is(3));
+    }
+    
+    /**
+     * A RosterManager rebalances a table just like it rebalances Rosters.
+     */
+    @Test
+    public void rebalanceTable() {
+        List<Roster> rosters = Arrays.asList(table.roster(0), table.roster(1), table.roster(2));
+        RosterTable managedTable = new RosterManager(2)
+                .useRandomSource(RandomSource.splittable(42))
+                .rebalance(table);
+        RosterManager rosterManager = new RosterManager(2)
+                .useRandomSource(RandomSource.splittable(42));
+        rosters.forEach(rosterManager::manage);
+        List<Roster> managedRosters = rosterManager.getManagedRosters();
+        
+        assertThat("The same number of managed Rosters", 
+                managedTable.rosterCount(), is(managedRosters.size()));
+        IntStream.range(0, managedRosters.size()).forEach(i -> {
+            assertThat("The same names", 
+                    managedTable.name(i), is(managedRosters.get(i).getName()));
+            assertThat("The same elements", 
+                    managedTable.roster(i).stream().collect(Collectors.toList()), 
+                    is(managedRosters.get(i).stream().collect(Collectors.toList())));
+        });
+    }
+    
+    /**
+     * A table can be built out of Rosters.
+     */
+    @Test
+    public void tableOfRosters() {
+        RosterTable copy = RosterTable.of(Arrays.asList(table.roster(0), table.roster(2)));
+        
+        assertThat("The table holds both Rosters", copy.rosterCount(), is(2));
+        assertThat("The Rosters keep their elements", copy.element(1, 0), is("four"));
+    }
+    
+    /**
+     * Elements must be neither null nor empty, just like in a Roster.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void tableRejectsEmptyElements() {
+        table.addRoster("fourth", "");
+    }
+    
+}
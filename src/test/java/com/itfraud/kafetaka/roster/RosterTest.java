@@ -26,7 +26,11 @@ For more information, please refer to <http://unlicense.org>*/
 
 package com.itfraud.kafetaka.roster;
 
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
@@ -82,4 +86,150 @@ public class RosterTest {
                 element, is(ANOTHER_ELEMENT));
     }
 
+    /**
+     * Popping from an empty Roster is not allowed, just like with any other stack.
+     */
+    @Test(expected = EmptyStackException.class)
+    public void popFromEmptyRoster() {
+        roster.pop();
+    }
+    
+    /**
+     * A Roster grows as needed and still keeps its elements in order,
+     * whether or not we reserved room for them beforehand.
+     */
+    @Test
+    public void rosterGrowsKeepingElementsInOrder() {
+        Roster reservedRoster = new Roster(ROSTER_NAME).ensureCapacity(1000);
+        IntStream.range(0, 1000).forEach(i -> {
+            roster.push("element " + i);
+            reservedRoster.push("element " + i);
+        });
+        List<String> elements = roster.stream().collect(Collectors.toList());
+        
+        assertThat("The Roster contains all the elements we added", 
+                roster.size(), is(1000));
+        assertThat("The elements are streamed in the order we added them", 
+                elements.get(999), is("element 999"));
+        assertThat("Reserving room does not change the Roster contents", 
+                reservedRoster.stream().collect(Collectors.toList()), is(elements));
+        assertThat("The last element added is the first one retrieved", 
+                roster.pop(), is("element 999"));
+    }
+
+    /**
+     * A shuffled copy holds the same elements under the same name, and it 
+     * leaves the original Roster as it was.
+     */
+    @Test
+    public void shuffledCopyKeepsTheElements() {
+        IntStream.range(0, 100).forEach(i -> roster.push("element " + i));
+        List<String> elements = roster.stream().collect(Collectors.toList());
+        Roster copy = roster.shuffledCopy(RandomSource.splittable(42));
+        
+        assertThat("The copy has the same name", 
+                copy, is(roster));
+        assertThat("The copy has the same elements", 
+                copy.stream().collect(Collectors.toList()), 
+                containsInAnyOrder(elements.toArray()));
+        assertThat("The copy elements have been shuffled", 
+                copy.stream().collect(Collectors.toList()), is(not(elements)));
+        assertThat("The original Roster is untouched", 
+                roster.stream().collect(Collectors.toList()), is(elements));
+        assertThat("The same seed gives the same copy", 
+                roster.shuffledCopy(RandomSource.splittable(42)).stream().collect(Collectors.toList()), 
+                is(copy.stream().collect(Collectors.toList())));
+    }
+
+    /**
+     * We can push and pop many elements at once: the popped elements come in
+     * the order they were pushed, so pushing them back leaves the Roster as it was.
+     */
+    @Test
+    public void pushAndPopManyElementsAtOnce() {
+        roster.pushAll("one", "two", "three");
+        String[] popped = roster.popN(2);
+        
+        assertThat("The last two elements are popped, in the order they were pushed", 
+                popped, is(arrayContaining("two", "three")));
+        assertThat("Only the first element is left", 
+                roster.stream().collect(Collectors.toList()), contains("one"));
+        
+        roster.pushAll(popped);
+        assertThat("Pushing them back leaves the Roster as it was", 
+                roster.stream().collect(Collectors.toList()), contains("one", "two", "three"));
+        assertThat("The last element pushed is the first one retrieved", 
+                roster.pop(), is("three"));
+    }
+    
+    /**
+     * We cannot pop more elements than a Roster has.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void popMoreElementsThanThereAre() {
+        roster.push(AN_ELEMENT).popN(2);
+    }
+    
+    /**
+     * Pushing many elements at once does not push any of them if one is not valid.
+     */
+    @Test
+    public void pushAllRejectsEmptyElements() {
+        try {
+            roster.pushAll(AN_ELEMENT, "");
+        } catch (IllegalArgumentException expected) {
+            assertThat("No element has been pushed", roster.isEmpty(), is(true));
+            return;
+        }
+        throw new AssertionError("An empty element must be rejected");
+    }
+
+    /**
+     * A Roster can be shuffled in place, keeping all its elements.
+     */
+    @Test
+    public void shuffleInPlace() {
+        IntStream.range(0, 100).forEach(i -> roster.push("element " + i));
+        List<String> elements = roster.stream().collect(Collectors.toList());
+        roster.shuffle(RandomSource.splittable(42));
+        
+        assertThat("The Roster keeps its elements", 
+                roster.stream().collect(Collectors.toList()), 
+                containsInAnyOrder(elements.toArray()));
+        assertThat("The elements have been shuffled", 
+                roster.stream().collect(Collectors.toList()), is(not(elements)));
+    }
+    
+    /**
+     * A read only Roster cannot even be made room in, just like it cannot be
+     * pushed to.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnlyRosterRejectsEnsureCapacity() {
+        roster.push("one").makeReadOnly();
+        
+        roster.ensureCapacity(100);
+    }
+    
+    /**
+     * A view gives away its last elements by reading just them, and keeps 
+     * reading the rest from its source.
+     */
+    @Test
+    public void viewPopsIntoWithoutCopying() {
+        AtomicInteger reads = new AtomicInteger();
+        Roster view = Roster.view("view", index -> {
+            reads.incrementAndGet();
+            return "element " + index;
+        }, 10);
+        String[] popped = new String[2];
+        view.popInto(popped, 0, 2);
+        
+        assertThat("The last elements are popped, in order", 
+                popped, is(new String[] {"element 8", "element 9"}));
+        assertThat("Only the popped elements are read", reads.get(), is(2));
+        assertThat("The rest is left", view.size(), is(8));
+        assertThat("The rest is still read from the source", view.pop(), is("element 7"));
+    }
+
 }